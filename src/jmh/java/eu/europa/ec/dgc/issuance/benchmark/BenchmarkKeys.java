@@ -0,0 +1,50 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.issuance.benchmark;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+
+/**
+ * Loads the signing keys of the test keystore certs/test.jks the same way
+ * the CertificatePrivateKeyProviderImpl does.
+ */
+final class BenchmarkKeys {
+    static final String KEY_STORE_FILE = "certs/test.jks";
+    static final String EC_ALIAS = "edgc_dev_ec";
+    static final String RSA_ALIAS = "edgc_dev_test";
+    private static final char[] PASSWORD = "dgca".toCharArray();
+
+    private BenchmarkKeys() {
+    }
+
+    static PrivateKey loadPrivateKey(String certAlias) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        try (InputStream is = new FileInputStream(KEY_STORE_FILE)) {
+            keyStore.load(is, PASSWORD);
+        }
+        KeyStore.PrivateKeyEntry privateKeyEntry = (KeyStore.PrivateKeyEntry) keyStore.getEntry(certAlias,
+            new KeyStore.PasswordProtection(PASSWORD));
+        return privateKeyEntry.getPrivateKey();
+    }
+}
@@ -0,0 +1,122 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.issuance.benchmark;
+
+import eu.europa.ec.dgc.issuance.DgcIssuanceApplication;
+import eu.europa.ec.dgc.issuance.service.SampleData;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Load test of the REST layer in both execution modes (issuance.execution.mode).
+ * The service is started with an embedded tomcat on a random port and a small tomcat thread pool,
+ * the benchmark threads act as concurrent clients. The sample time mode reports the latency percentiles,
+ * compare p99 and throughput of PLATFORM and VIRTUAL. VIRTUAL falls back to PLATFORM on runtimes
+ * before Java 21, run this benchmark on Java 21 to compare the modes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.SampleTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Threads(200)
+@Fork(1)
+public class ExecutionModeBenchmark {
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    private String mode;
+
+    @Param({"50"})
+    private int tomcatThreads;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient httpClient;
+    private HttpRequest issueRequest;
+    private HttpRequest statusRequest;
+
+    /**
+     * Start the service in the execution mode of this run.
+     */
+    @Setup
+    public void setup() {
+        context = new SpringApplicationBuilder(DgcIssuanceApplication.class)
+            .web(WebApplicationType.SERVLET)
+            .run("--server.port=0",
+                "--server.tomcat.threads.max=" + tomcatThreads,
+                "--server.tomcat.accept-count=1000",
+                "--issuance.execution.mode=" + mode);
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        issueRequest = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/dgci/issue"))
+            .header("Content-Type", "application/json")
+            .PUT(HttpRequest.BodyPublishers.ofString(SampleData.vaccination))
+            .build();
+        // cheap request, shows how long requests wait for a request thread while others are signing
+        statusRequest = HttpRequest.newBuilder(URI.create("http://localhost:" + port
+                + "/dgci/47DEQpj8HBSa-_TImW-5JCeuQeRkm5NMpJWZG3hSuFU"))
+            .method("HEAD", HttpRequest.BodyPublishers.noBody())
+            .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int issue() throws Exception {
+        return send(issueRequest);
+    }
+
+    @Benchmark
+    public int status() throws Exception {
+        return send(statusRequest);
+    }
+
+    private int send(HttpRequest request) throws Exception {
+        int status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        if (status >= 500) {
+            throw new IllegalStateException("request failed with status " + status);
+        }
+        return status;
+    }
+}
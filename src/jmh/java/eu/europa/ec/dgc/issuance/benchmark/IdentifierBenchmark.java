@@ -0,0 +1,79 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.issuance.benchmark;
+
+import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
+import eu.europa.ec.dgc.issuance.service.DgciGenerator;
+import eu.europa.ec.dgc.issuance.service.Tan;
+import eu.europa.ec.dgc.issuance.utils.HashUtil;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Generation of the identifiers and secrets that every issued certificate needs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdentifierBenchmark {
+
+    private DgciGenerator dgciGenerator;
+    private String dgci;
+
+    /**
+     * Create the generator with the default prefix.
+     */
+    @Setup
+    public void setup() {
+        IssuanceConfigProperties issuanceConfigProperties = new IssuanceConfigProperties();
+        issuanceConfigProperties.setDgciPrefix("URN:UVCI:V1:DE");
+        dgciGenerator = new DgciGenerator(issuanceConfigProperties);
+        dgciGenerator.checkPrefix();
+        dgci = dgciGenerator.newDgci();
+    }
+
+    @Benchmark
+    public String newDgci() {
+        return dgciGenerator.newDgci();
+    }
+
+    @Benchmark
+    public Tan createTan() {
+        return Tan.create();
+    }
+
+    @Benchmark
+    public String sha256Base64() {
+        return HashUtil.sha256Base64(dgci);
+    }
+}
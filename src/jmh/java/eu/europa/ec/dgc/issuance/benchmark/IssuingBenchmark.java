@@ -0,0 +1,133 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.issuance.benchmark;
+
+import ehn.techiop.hcert.kotlin.chain.Base45Service;
+import ehn.techiop.hcert.kotlin.chain.CborService;
+import ehn.techiop.hcert.kotlin.chain.Chain;
+import ehn.techiop.hcert.kotlin.chain.ChainResult;
+import ehn.techiop.hcert.kotlin.chain.CompressorService;
+import ehn.techiop.hcert.kotlin.chain.ContextIdentifierService;
+import ehn.techiop.hcert.kotlin.chain.CoseService;
+import ehn.techiop.hcert.kotlin.chain.HigherOrderValidationService;
+import ehn.techiop.hcert.kotlin.chain.SchemaValidationService;
+import ehn.techiop.hcert.kotlin.data.GreenCertificate;
+import eu.europa.ec.dgc.issuance.DgcIssuanceApplication;
+import eu.europa.ec.dgc.issuance.restapi.dto.EgdcCodeData;
+import eu.europa.ec.dgc.issuance.service.ConfigurableCwtService;
+import eu.europa.ec.dgc.issuance.service.DgciService;
+import eu.europa.ec.dgc.issuance.service.EdgcIssuingChain;
+import eu.europa.ec.dgc.issuance.service.SampleData;
+import java.util.concurrent.TimeUnit;
+import kotlinx.serialization.json.Json;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Backend issuing path of createEdgc. The services are taken from a started application context
+ * (test configuration with the certs/test.jks EC key and in-memory database), so the benchmarks
+ * measure the beans exactly as they are wired in the service.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IssuingBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private DgciService dgciService;
+    private ConfigurableCwtService cwtService;
+    private Chain chain;
+    private EdgcIssuingChain edgcIssuingChain;
+    private GreenCertificate greenCertificate;
+    private byte[] cbor;
+    private byte[] cose;
+
+    /**
+     * Start the application context and prepare the input of every stage.
+     */
+    @Setup
+    public void setup() {
+        context = new SpringApplicationBuilder(DgcIssuanceApplication.class)
+            .web(WebApplicationType.NONE)
+            .run();
+        dgciService = context.getBean(DgciService.class);
+        cwtService = context.getBean(ConfigurableCwtService.class);
+        chain = new Chain(context.getBean(HigherOrderValidationService.class),
+            context.getBean(SchemaValidationService.class),
+            context.getBean(CborService.class),
+            cwtService,
+            context.getBean(CoseService.class),
+            context.getBean(CompressorService.class),
+            context.getBean(Base45Service.class),
+            context.getBean(ContextIdentifierService.class));
+        edgcIssuingChain = context.getBean(EdgcIssuingChain.class);
+        greenCertificate = Json.Default.decodeFromString(GreenCertificate.Companion.serializer(),
+            SampleData.vaccination);
+        ChainResult chainResult = chain.encode(greenCertificate);
+        cbor = chainResult.getStep0Cbor();
+        cose = chainResult.getStep2Cose();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] computeCoseSignHash() {
+        return dgciService.computeCoseSignHash(cose);
+    }
+
+    @Benchmark
+    public byte[] cwtEncode() {
+        return cwtService.encode(cbor);
+    }
+
+    @Benchmark
+    public ChainResult chainEncode() {
+        return chain.encode(greenCertificate);
+    }
+
+    @Benchmark
+    public EdgcIssuingChain.EncodedEdgc issuingChainEncode() {
+        return edgcIssuingChain.encode(greenCertificate, "URN:UVCI:V1:DE:BENCHMARK");
+    }
+
+    @Benchmark
+    public EgdcCodeData createEdgc() {
+        return dgciService.createEdgc(SampleData.vaccination);
+    }
+}
@@ -0,0 +1,74 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.issuance.benchmark;
+
+import eu.europa.ec.dgc.issuance.service.SigningService;
+import eu.europa.ec.dgc.issuance.service.impl.SigningServiceImpl;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Signature of an already computed COSE hash, as done by finishDgci.
+ * The EC key is the primary signing algorithm, RSA-PSS the secondary one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SigningBenchmark {
+
+    @Param({BenchmarkKeys.EC_ALIAS, BenchmarkKeys.RSA_ALIAS})
+    public String certAlias;
+
+    private SigningService signingService;
+    private PrivateKey privateKey;
+    private byte[] hash;
+
+    /**
+     * Load the key of the selected alias.
+     */
+    @Setup
+    public void setup() throws Exception {
+        privateKey = BenchmarkKeys.loadPrivateKey(certAlias);
+        signingService = new SigningServiceImpl();
+        hash = MessageDigest.getInstance("SHA-256").digest("benchmark".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public byte[] signHash() {
+        return signingService.signHash(hash, privateKey);
+    }
+}
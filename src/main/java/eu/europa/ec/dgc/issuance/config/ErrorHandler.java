@@ -24,6 +24,7 @@ import eu.europa.ec.dgc.issuance.restapi.dto.ProblemReportDto;
 import eu.europa.ec.dgc.issuance.service.DdcGatewayException;
 import eu.europa.ec.dgc.issuance.service.DgciConflict;
 import eu.europa.ec.dgc.issuance.service.DgciNotFound;
+import eu.europa.ec.dgc.issuance.service.SigningOverloaded;
 import eu.europa.ec.dgc.issuance.service.WrongRequest;
 import javax.validation.ConstraintViolationException;
 import lombok.RequiredArgsConstructor;
@@ -99,6 +100,20 @@ public class ErrorHandler extends ResponseEntityExceptionHandler {
                 "", e.getCause() != null ? e.getCause().getMessage() : null));
     }
 
+    /**
+     * Exception Handler to handle {@link SigningOverloaded} Exceptions.
+     * The client is asked to retry after the configured time.
+     */
+    @ExceptionHandler(SigningOverloaded.class)
+    public ResponseEntity<ProblemReportDto> handleException(SigningOverloaded e) {
+        log.warn(e.getMessage());
+        return ResponseEntity
+            .status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, e.getRetryAfter().toSeconds())))
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(new ProblemReportDto("", "Signing overloaded", "", e.getMessage()));
+    }
+
     /**
      * Exception Handler to handle {@link WrongRequest} Exceptions.
      */
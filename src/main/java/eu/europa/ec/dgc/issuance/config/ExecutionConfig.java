@@ -0,0 +1,67 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.issuance.config;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Slf4j
+@Configuration
+public class ExecutionConfig {
+
+    /**
+     * Runs every request of the embedded tomcat on its own virtual thread (issuance.execution.mode VIRTUAL).
+     * Blocking on the database then parks only the virtual thread, the number of concurrent requests is bounded
+     * by the connection pool instead of the tomcat thread pool. Encoding and signing still run on the bounded
+     * {@link eu.europa.ec.dgc.issuance.service.SigningExecutor}.
+     * The executor is looked up by reflection, the service is built for Java 11 and virtual threads need
+     * a Java 21 runtime. On older runtimes the platform thread pool is kept.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "issuance.execution.mode", havingValue = "VIRTUAL")
+    TomcatProtocolHandlerCustomizer<?> virtualThreadCustomizer() {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        return protocolHandler -> {
+            if (executor != null) {
+                protocolHandler.setExecutor(executor);
+                log.info("tomcat requests are handled on virtual threads");
+            }
+        };
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("virtual threads are not available on Java {}, using platform threads",
+                Runtime.version().feature());
+            return null;
+        }
+    }
+}
@@ -15,6 +15,8 @@ import ehn.techiop.hcert.kotlin.chain.impl.DefaultCoseService;
 import ehn.techiop.hcert.kotlin.chain.impl.DefaultHigherOrderValidationService;
 import ehn.techiop.hcert.kotlin.chain.impl.DefaultSchemaValidationService;
 import eu.europa.ec.dgc.issuance.service.EhdCryptoService;
+import eu.europa.ec.dgc.issuance.service.SigningCoseService;
+import eu.europa.ec.dgc.issuance.service.SigningExecutor;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -23,10 +25,11 @@ import org.springframework.context.annotation.Configuration;
 @RequiredArgsConstructor
 public class HcertLibConfig {
     private final EhdCryptoService ehdCryptoService;
+    private final SigningExecutor signingExecutor;
 
     @Bean
     CoseService coseService() {
-        return new DefaultCoseService(ehdCryptoService);
+        return new SigningCoseService(new DefaultCoseService(ehdCryptoService), signingExecutor);
     }
 
     @Bean
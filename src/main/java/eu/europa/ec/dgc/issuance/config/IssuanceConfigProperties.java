@@ -22,6 +22,8 @@ package eu.europa.ec.dgc.issuance.config;
 
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
@@ -52,9 +54,39 @@ public class IssuanceConfigProperties {
     private String contextFile;
     private String contextData = "";
 
+    private ContextCache contextCache = new ContextCache();
+
     @NotNull
     private Expiration expiration;
 
+    private Bulk bulk = new Bulk();
+
+    private DidCache didCache = new DidCache();
+
+    private HashFilter hashFilter = new HashFilter();
+
+    private ClaimRetry claimRetry = new ClaimRetry();
+
+    private Purge purge = new Purge();
+
+    private TanPool tanPool = new TanPool();
+
+    private Export export = new Export();
+
+    private Revocation revocation = new Revocation();
+
+    private RevocationList revocationList = new RevocationList();
+
+    private HashMigration hashMigration = new HashMigration();
+
+    private Partitioning partitioning = new Partitioning();
+
+    private Execution execution = new Execution();
+
+    private Pkcs11 pkcs11 = new Pkcs11();
+
+    private SigningKeys signingKeys = new SigningKeys();
+
     @Getter
     @Setter
     public static class Expiration {
@@ -69,6 +101,281 @@ public class IssuanceConfigProperties {
         private Duration test;
     }
 
+    @Getter
+    @Setter
+    public static class Bulk {
+        /**
+         * Number of threads encoding and signing bulk certificates, 0 means one per available processor.
+         */
+        private int threads = 0;
+        /**
+         * Number of certificates that are signed in parallel and persisted in one transaction.
+         */
+        private int chunkSize = 100;
+        /**
+         * Attempts of a certificate rejected by a full signing queue before it is reported as failed.
+         */
+        private int overloadRetries = 10;
+        /**
+         * First pause before such a certificate is retried, doubled per attempt up to execution.retryAfter.
+         */
+        private Duration overloadBackoff = Duration.ofMillis(100);
+    }
+
+    @Getter
+    @Setter
+    public static class DidCache {
+        private boolean enabled = true;
+        private long maximumSize = 10000;
+        /**
+         * Time to live of cached DID status and documents in the local cache.
+         */
+        @DurationUnit(ChronoUnit.SECONDS)
+        private Duration ttl = Duration.ofSeconds(60);
+        /**
+         * Name of the cache of the spring CacheManager used as distributed second level, empty for local only.
+         */
+        private String distributedCacheName = "";
+    }
+
+    @Getter
+    @Setter
+    public static class HashFilter {
+        /**
+         * Off by default: with several instances a dgci issued by another instance is unknown to the filter
+         * until the next sync.
+         */
+        private boolean enabled = false;
+        /**
+         * Expected number of dgci, the filter memory is about 1.2 bytes per dgci at 1% false positives.
+         */
+        private long expectedInsertions = 10_000_000;
+        private double falsePositiveRate = 0.01;
+        /**
+         * Interval for adding dgci created by other instances.
+         */
+        @DurationUnit(ChronoUnit.SECONDS)
+        private Duration syncInterval = Duration.ofSeconds(30);
+        /**
+         * Interval for a full rebuild from database, removes deleted dgci from the filter.
+         */
+        @DurationUnit(ChronoUnit.HOURS)
+        private Duration rebuildInterval = Duration.ofHours(24);
+        private int pageSize = 10000;
+    }
+
+    @Getter
+    @Setter
+    public static class ClaimRetry {
+        /**
+         * Collect failed claim attempts in memory and write them in batches instead of one update per attempt.
+         */
+        private boolean buffered = false;
+        @DurationUnit(ChronoUnit.SECONDS)
+        private Duration flushInterval = Duration.ofSeconds(5);
+    }
+
+    @Getter
+    @Setter
+    public static class Purge {
+        private boolean enabled = false;
+        private String cron = "0 0 3 * * *";
+        /**
+         * Rows deleted or archived per transaction.
+         */
+        private int chunkSize = 500;
+        /**
+         * Pause after each chunk, limits the load on the database.
+         */
+        private Duration pauseBetweenChunks = Duration.ofMillis(200);
+        /**
+         * Upper bound of chunks per category and run, the rest is done in the next run.
+         */
+        private int maxChunksPerRun = 1000;
+        /**
+         * Expired rows are kept for this period after expiration.
+         */
+        @DurationUnit(ChronoUnit.DAYS)
+        private Duration gracePeriod = Duration.ofDays(0);
+        private ClaimedExpiredAction claimedExpired = ClaimedExpiredAction.KEEP;
+        /**
+         * The cluster lock of a run is released after this time even if the instance died while purging.
+         */
+        private Duration lockAtMostFor = Duration.ofHours(6);
+    }
+
+    @Getter
+    @Setter
+    public static class TanPool {
+        /**
+         * Generate TANs in a background thread, request threads take them from the pool.
+         */
+        private boolean enabled = false;
+        private int size = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class ContextCache {
+        /**
+         * Reload the context file when it is changed on disk.
+         */
+        private boolean watchFile = true;
+        /**
+         * Max age of the Cache-Control header of the /context response.
+         */
+        @DurationUnit(ChronoUnit.SECONDS)
+        private Duration maxAge = Duration.ofMinutes(5);
+    }
+
+    @Getter
+    @Setter
+    public static class Export {
+        /**
+         * Rows fetched from the database cursor at once, upper bound of rows held in memory by an export.
+         */
+        private int fetchSize = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class Revocation {
+        /**
+         * Dgci hashes updated by one statement and transaction.
+         */
+        private int chunkSize = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class RevocationList {
+        /**
+         * Bytes of the dgci hash stored per revoked dgci, 8 to 32.
+         */
+        private int prefixLength = 8;
+        /**
+         * False positive rate of the bloom filter in the list header.
+         */
+        private double falsePositiveRate = 0.001;
+        /**
+         * Interval for adding dgci revoked by other instances.
+         */
+        @DurationUnit(ChronoUnit.SECONDS)
+        private Duration syncInterval = Duration.ofSeconds(30);
+        /**
+         * Interval for a full rebuild from database, removes purged dgci from the list.
+         */
+        @DurationUnit(ChronoUnit.HOURS)
+        private Duration rebuildInterval = Duration.ofHours(24);
+        private int pageSize = 10000;
+    }
+
+    @Getter
+    @Setter
+    public static class HashMigration {
+        /**
+         * Fill the binary dgci hash of rows written by older versions in the background after startup.
+         */
+        private boolean enabled = true;
+        private int chunkSize = 1000;
+        private Duration pauseBetweenChunks = Duration.ofMillis(100);
+    }
+
+    @Getter
+    @Setter
+    public static class Partitioning {
+        /**
+         * Monthly partitions created in advance, used only if the dgci table is partitioned.
+         */
+        private int monthsAhead = 3;
+        /**
+         * Drop partitions of which all dgci are expired longer than issuance.purge.gracePeriod.
+         * Claimed dgci are kept, archived or dropped as configured by issuance.purge.claimedExpired.
+         */
+        private boolean dropExpired = true;
+        private String cron = "0 30 2 * * *";
+    }
+
+    @Getter
+    @Setter
+    public static class Execution {
+        /**
+         * Threads handling REST requests. VIRTUAL needs a Java 21 runtime, on older runtimes PLATFORM is used.
+         */
+        private ExecutionMode mode = ExecutionMode.PLATFORM;
+        /**
+         * Threads encoding and signing certificates, 0 means one per available processor.
+         */
+        private int cpuThreads = 0;
+        /**
+         * Encoding and signing tasks waiting for a thread, further requests are answered with 503.
+         */
+        private int queueCapacity = 200;
+        /**
+         * Retry-After of the 503 response when the signing queue is full.
+         */
+        @DurationUnit(ChronoUnit.SECONDS)
+        private Duration retryAfter = Duration.ofSeconds(1);
+    }
+
+    @Getter
+    @Setter
+    public static class Pkcs11 {
+        /**
+         * PKCS#11 library of the HSM, used with the profile pkcs11. The key and certificate are found by certAlias.
+         */
+        private String library;
+        /**
+         * Slot id of the token, if not set the slot is selected by slotListIndex.
+         */
+        private Long slot;
+        private int slotListIndex = 0;
+        private String pin;
+        /**
+         * Signing operations running in parallel on the HSM.
+         */
+        private int sessions = 4;
+        /**
+         * Max wait for a free session before signing fails.
+         */
+        private Duration acquireTimeout = Duration.ofSeconds(5);
+        /**
+         * Min time between two test signatures of the health check.
+         */
+        @DurationUnit(ChronoUnit.SECONDS)
+        private Duration healthCheckInterval = Duration.ofSeconds(30);
+    }
+
+    @Getter
+    @Setter
+    public static class SigningKeys {
+        /**
+         * Aliases of further active signing keys, in addition to certAlias. New certificates are signed
+         * by all active keys, selected per certificate.
+         */
+        private List<String> aliases = new ArrayList<>();
+        /**
+         * Aliases of keys that are no longer selected, but still finish certificates reserved with them.
+         */
+        private List<String> retiredAliases = new ArrayList<>();
+        /**
+         * Key selection of backend issuing, reservations of frontend issuing are always round robin.
+         */
+        private KeySelection selection = KeySelection.ROUND_ROBIN;
+    }
+
+    public enum ClaimedExpiredAction {
+        KEEP, ARCHIVE, DELETE
+    }
+
+    public enum ExecutionMode {
+        PLATFORM, VIRTUAL
+    }
+
+    public enum KeySelection {
+        ROUND_ROBIN, LEAST_LOADED
+    }
+
     @Getter
     @Setter
     @NotNull
@@ -79,6 +386,9 @@ public class IssuanceConfigProperties {
         private boolean wallet;
         private boolean publishCert;
         private boolean did;
+        private boolean export;
+        private boolean revocation;
+        private boolean revocationList;
     }
 
 }
@@ -20,6 +20,7 @@
 
 package eu.europa.ec.dgc.issuance.entity;
 
+import eu.europa.ec.dgc.issuance.utils.HashUtil;
 import java.time.ZonedDateTime;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -28,6 +29,7 @@ import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import lombok.Data;
 
@@ -36,8 +38,13 @@ import lombok.Data;
 @Table(name = "dgci")
 public class DgciEntity {
 
+    /**
+     * Ids are taken from a pooled sequence, so that inserts can be batched by JDBC.
+     * The allocation size must match the increment of the dgci_seq sequence.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "dgci_seq")
+    @SequenceGenerator(name = "dgci_seq", sequenceName = "dgci_seq", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
@@ -47,6 +54,13 @@ public class DgciEntity {
     @Column(name = "dgci_hash", nullable = false, unique = true, length = 512)
     private String dgciHash;
 
+    /**
+     * The dgci hash as 32 bytes, the key of dgci hash lookups. It is always set together with dgciHash,
+     * rows of older versions are filled by the dgci hash migration.
+     */
+    @Column(name = "dgci_hash_bin", length = HashUtil.SHA256_LENGTH)
+    private byte[] dgciHashBin;
+
     @Column(name = "created_at", nullable = false)
     private ZonedDateTime createdAt = ZonedDateTime.now();
 
@@ -72,9 +86,29 @@ public class DgciEntity {
     @Column(name = "revoked")
     private boolean revoked;
 
+    @Column(name = "revoked_at")
+    private ZonedDateTime revokedAt;
+
     @Column(name = "claimed")
     private boolean claimed;
 
     @Column(name = "locked")
     private boolean locked;
+
+    /**
+     * Kid of the signing key, set when the dgci is reserved or issued. Null for rows of older versions,
+     * they were signed by the key of certAlias.
+     */
+    @Column(name = "kid", length = 64)
+    private String kid;
+
+    /**
+     * Set the Base64 encoded dgci hash and its binary form.
+     *
+     * @param dgciHash Base64 encoded SHA-256 hash of dgci
+     */
+    public void setDgciHash(String dgciHash) {
+        this.dgciHash = dgciHash;
+        this.dgciHashBin = HashUtil.decodeSha256Base64(dgciHash);
+    }
 }
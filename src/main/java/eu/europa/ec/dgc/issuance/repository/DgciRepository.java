@@ -21,12 +21,135 @@
 package eu.europa.ec.dgc.issuance.repository;
 
 import eu.europa.ec.dgc.issuance.entity.DgciEntity;
+import java.time.ZonedDateTime;
+import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface DgciRepository extends JpaRepository<DgciEntity, Long> {
 
     Optional<DgciEntity> findByDgci(String dgci);
 
     Optional<DgciEntity> findByDgciHash(String dgciHash);
+
+    Optional<DgciEntity> findByDgciHashBin(byte[] dgciHashBin);
+
+    /**
+     * Find by binary dgci hash in a partitioned dgci table.
+     * The lookup table gives id and created_at, so only one partition is searched.
+     */
+    @Query(value = "SELECT d.* FROM dgci_lookup l JOIN dgci d ON d.id = l.id AND d.created_at = l.created_at"
+        + " WHERE l.dgci_hash_bin = :dgciHashBin", nativeQuery = true)
+    Optional<DgciEntity> findByDgciHashBinFromLookup(@Param("dgciHashBin") byte[] dgciHashBin);
+
+    @Query("SELECT d.id AS id, d.dgciHash AS dgciHash FROM DgciEntity d"
+        + " WHERE d.id > :afterId AND d.dgciHashBin IS NULL ORDER BY d.id")
+    List<DgciHashView> findWithoutBinaryHashAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    @Query("SELECT d.id AS id, d.dgciHash AS dgciHash FROM DgciEntity d WHERE d.id > :afterId ORDER BY d.id")
+    List<DgciHashView> findDgciHashesAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    @Query("SELECT d.dgciHash FROM DgciEntity d WHERE d.createdAt >= :since")
+    List<String> findDgciHashesCreatedSince(@Param("since") ZonedDateTime since);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE DgciEntity d SET d.retryCounter = d.retryCounter + :increment"
+        + " WHERE d.dgci = :dgci AND d.retryCounter <= :maxRetryCounter")
+    int incrementRetryCounter(@Param("dgci") String dgci, @Param("increment") int increment,
+                              @Param("maxRetryCounter") int maxRetryCounter);
+
+    /**
+     * Claim the dgci if TAN and cert hash match, the retry counter is not exceeded and the TAN is not expired.
+     * The TAN of an already claimed dgci does not expire.
+     *
+     * @return number of updated rows, 0 if one of the conditions is not met
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE DgciEntity d SET d.claimed = true, d.publicKey = :publicKey, d.hashedTan = :newHashedTan,"
+        + " d.retryCounter = 0"
+        + " WHERE d.dgci = :dgci AND d.hashedTan = :hashedTan AND d.certHash = :certHash"
+        + " AND d.retryCounter <= :maxRetryCounter AND (d.claimed = true OR d.createdAt >= :tanValidSince)")
+    int claim(@Param("dgci") String dgci, @Param("certHash") String certHash, @Param("hashedTan") String hashedTan,
+              @Param("publicKey") String publicKey, @Param("newHashedTan") String newHashedTan,
+              @Param("maxRetryCounter") int maxRetryCounter, @Param("tanValidSince") ZonedDateTime tanValidSince);
+
+    /**
+     * Store cert hash and hashed TAN of a signed dgci, unless a concurrent request has signed it before.
+     *
+     * @return number of updated rows, 0 if the dgci is already signed
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE DgciEntity d SET d.certHash = :certHash, d.hashedTan = :hashedTan"
+        + " WHERE d.id = :id AND d.certHash IS NULL")
+    int finishSigning(@Param("id") long id, @Param("certHash") String certHash,
+                      @Param("hashedTan") String hashedTan);
+
+    @Query("SELECT d.id AS id, d.dgciHash AS dgciHash FROM DgciEntity d"
+        + " WHERE d.id > :afterId AND d.claimed = false AND d.expiresAt < :expiredBefore ORDER BY d.id")
+    List<DgciHashView> findExpiredUnclaimed(@Param("afterId") long afterId,
+                                            @Param("expiredBefore") ZonedDateTime expiredBefore, Pageable pageable);
+
+    @Query("SELECT d.id AS id, d.dgciHash AS dgciHash FROM DgciEntity d"
+        + " WHERE d.id > :afterId AND d.certHash IS NULL AND d.createdAt < :createdBefore ORDER BY d.id")
+    List<DgciHashView> findUnsignedReservations(@Param("afterId") long afterId,
+                                                @Param("createdBefore") ZonedDateTime createdBefore,
+                                                Pageable pageable);
+
+    @Query("SELECT d.id AS id, d.dgciHash AS dgciHash FROM DgciEntity d"
+        + " WHERE d.id > :afterId AND d.claimed = true AND d.expiresAt < :expiredBefore ORDER BY d.id")
+    List<DgciHashView> findExpiredClaimed(@Param("afterId") long afterId,
+                                          @Param("expiredBefore") ZonedDateTime expiredBefore, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM DgciEntity d WHERE d.id IN :ids")
+    int deleteByIds(@Param("ids") List<Long> ids);
+
+    @Modifying
+    @Query(value = "INSERT INTO dgci_archive (id, dgci, dgci_hash, created_at, expires_at, cert_hash,"
+        + " green_certificate_type, public_key, revoked, claimed, locked, kid, archived_at)"
+        + " SELECT id, dgci, dgci_hash, created_at, expires_at, cert_hash,"
+        + " green_certificate_type, public_key, revoked, claimed, locked, kid, CURRENT_TIMESTAMP"
+        + " FROM dgci WHERE id IN (:ids)", nativeQuery = true)
+    int archiveByIds(@Param("ids") List<Long> ids);
+
+    @Modifying
+    @Query("UPDATE DgciEntity d SET d.revoked = true, d.revokedAt = :revokedAt"
+        + " WHERE d.dgciHash IN :dgciHashes AND d.revoked = false")
+    int revokeByDgciHashes(@Param("dgciHashes") List<String> dgciHashes,
+                           @Param("revokedAt") ZonedDateTime revokedAt);
+
+    @Modifying
+    @Query("UPDATE DgciEntity d SET d.locked = :locked WHERE d.dgciHash IN :dgciHashes AND d.locked <> :locked")
+    int lockByDgciHashes(@Param("dgciHashes") List<String> dgciHashes, @Param("locked") boolean locked);
+
+    @Query("SELECT d.id AS id, d.dgciHash AS dgciHash, d.revokedAt AS revokedAt FROM DgciEntity d"
+        + " WHERE d.id > :afterId AND d.revoked = true ORDER BY d.id")
+    List<RevokedDgciView> findRevokedAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    @Query("SELECT d.id AS id, d.dgciHash AS dgciHash, d.revokedAt AS revokedAt FROM DgciEntity d"
+        + " WHERE d.revoked = true AND d.revokedAt >= :since")
+    List<RevokedDgciView> findRevokedSince(@Param("since") ZonedDateTime since);
+
+    interface DgciHashView {
+        Long getId();
+
+        String getDgciHash();
+    }
+
+    interface RevokedDgciView {
+        Long getId();
+
+        String getDgciHash();
+
+        ZonedDateTime getRevokedAt();
+    }
 }
@@ -24,11 +24,14 @@ import eu.europa.ec.dgc.issuance.restapi.dto.EgcDecodeResult;
 import eu.europa.ec.dgc.issuance.restapi.dto.PublicKeyInfo;
 import eu.europa.ec.dgc.issuance.service.CertificateService;
 import eu.europa.ec.dgc.issuance.service.EdgcValidator;
+import eu.europa.ec.dgc.issuance.service.SigningKey;
 import eu.europa.ec.dgc.issuance.utils.CborDumpService;
 import io.swagger.v3.oas.annotations.Operation;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
 import lombok.AllArgsConstructor;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.http.MediaType;
@@ -106,5 +109,25 @@ public class CertController {
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * Rest Controller to get the Public Key Information of all signing keys.
+     */
+    @Operation(
+        summary = "get information about the public keys of all signing keys, developing tool"
+    )
+    @GetMapping(value = "publicKeys")
+    public ResponseEntity<List<PublicKeyInfo>> getPublicKeys() {
+        List<PublicKeyInfo> result = new ArrayList<>();
+        for (SigningKey signingKey : certificateService.getSigningKeys()) {
+            result.add(new PublicKeyInfo(
+                signingKey.getKidBase64(),
+                signingKey.getAlgorithmIdentifier(),
+                signingKey.getPublicKey().getAlgorithm(),
+                signingKey.getPublicKey().getFormat(),
+                Base64.getEncoder().encodeToString(signingKey.getPublicKey().getEncoded())));
+        }
+        return ResponseEntity.ok(result);
+    }
+
 
 }
@@ -1,14 +1,20 @@
 package eu.europa.ec.dgc.issuance.restapi.controller;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
 import eu.europa.ec.dgc.issuance.service.ContextService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import java.util.Arrays;
 import lombok.AllArgsConstructor;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -18,16 +24,57 @@ import org.springframework.web.bind.annotation.RestController;
 @ConditionalOnExpression("${issuance.endpoints.wallet:false}")
 public class ContextController {
     private final ContextService contextService;
+    private final IssuanceConfigProperties issuanceConfigProperties;
 
+    /**
+     * Context json, serialized once by the context service.
+     *
+     * @param ifNoneMatch etag of the context the client already has
+     * @param acceptEncoding content encodings accepted by the client
+     * @return response
+     */
     @Operation(
         summary = "provide configuration information for wallet app",
         description = "list of claim endpoints for wallet app"
     )
     @ApiResponses(value = {
-        @ApiResponse(responseCode = "200", description = "server list")}
+        @ApiResponse(responseCode = "200", description = "server list"),
+        @ApiResponse(responseCode = "304", description = "server list not modified")}
     )
-    @GetMapping(value = "")
-    public ResponseEntity<JsonNode> context() {
-        return ResponseEntity.ok(contextService.getContextDefinition());
+    @GetMapping(value = "", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> context(
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        ContextService.SerializedContext context = contextService.getSerializedContext();
+        boolean gzip = context.getGzipBody() != null && acceptsGzip(acceptEncoding);
+        CacheControl cacheControl = CacheControl.maxAge(issuanceConfigProperties.getContextCache().getMaxAge())
+            .cachePublic();
+        if (context.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(gzip ? context.getGzipEtag() : context.getEtag())
+                .cacheControl(cacheControl)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .cacheControl(cacheControl)
+            .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return response.eTag(context.getGzipEtag())
+                .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .body(context.getGzipBody());
+        }
+        return response.eTag(context.getEtag()).body(context.getBody());
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        return Arrays.stream(acceptEncoding.split(","))
+            .map(coding -> coding.trim().split(";"))
+            .anyMatch(parts -> "gzip".equalsIgnoreCase(parts[0].trim())
+                && (parts.length < 2 || !parts[1].trim().matches("q=0(\\.0*)?")));
     }
 }
@@ -1,10 +1,14 @@
 package eu.europa.ec.dgc.issuance.restapi.controller;
 
 import eu.europa.ec.dgc.issuance.restapi.dto.EgdcCodeData;
+import eu.europa.ec.dgc.issuance.service.BulkIssuanceService;
 import eu.europa.ec.dgc.issuance.service.DgciService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import java.io.IOException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import lombok.AllArgsConstructor;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.http.MediaType;
@@ -20,6 +24,7 @@ import org.springframework.web.bind.annotation.RestController;
 @ConditionalOnExpression("${issuance.endpoints.backendIssuing:false}")
 public class DgciBackendController {
     private final DgciService dgciService;
+    private final BulkIssuanceService bulkIssuanceService;
 
     @Operation(
         summary = "create qr code of edgc",
@@ -33,4 +38,29 @@ public class DgciBackendController {
         EgdcCodeData egdcCodeData = dgciService.createEdgc(eudgc);
         return ResponseEntity.ok(egdcCodeData);
     }
+
+    /**
+     * Create many edgc in one request.
+     * The request body is either NDJSON (one DCC JSON per line) or a JSON array of DCC JSON objects.
+     * The response is streamed as NDJSON with one entry per certificate in input order, containing either
+     * dgci, qrCode and tan or an error message for this certificate.
+     */
+    @Operation(
+        summary = "create qr codes of many edgc",
+        description = "create edgc for each given data, the result is streamed as NDJSON"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "edgc created, errors are reported per certificate")})
+    @PutMapping(value = "/issue/bulk",
+        consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE},
+        produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void createEdgcBulk(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        if (MediaType.APPLICATION_JSON.isCompatibleWith(MediaType.parseMediaType(request.getContentType()))) {
+            bulkIssuanceService.createEdgcFromJsonArray(request.getInputStream(), response.getOutputStream());
+        } else {
+            bulkIssuanceService.createEdgcFromNdjson(request.getInputStream(), response.getOutputStream());
+        }
+    }
 }
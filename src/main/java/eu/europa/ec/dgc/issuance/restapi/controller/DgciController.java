@@ -20,6 +20,9 @@
 
 package eu.europa.ec.dgc.issuance.restapi.controller;
 
+import eu.europa.ec.dgc.issuance.restapi.dto.DgciBatchInit;
+import eu.europa.ec.dgc.issuance.restapi.dto.DgciBatchIssueItem;
+import eu.europa.ec.dgc.issuance.restapi.dto.DgciBatchIssueResult;
 import eu.europa.ec.dgc.issuance.restapi.dto.DgciIdentifier;
 import eu.europa.ec.dgc.issuance.restapi.dto.DgciInit;
 import eu.europa.ec.dgc.issuance.restapi.dto.IssueData;
@@ -28,6 +31,7 @@ import eu.europa.ec.dgc.issuance.service.DgciService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import java.util.List;
 import javax.validation.Valid;
 import lombok.AllArgsConstructor;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
@@ -57,6 +61,33 @@ public class DgciController {
         return ResponseEntity.ok(dgciService.initDgci(dgciInit));
     }
 
+    @Operation(
+        summary = "Prepares a batch of DGCIs for the Code Generation in Frontend",
+        description = "Creates count new dgcis in one transaction and return meta data for certificate creation"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "dgcis created"),
+        @ApiResponse(responseCode = "400", description = "wrong batch data")})
+    @PostMapping(value = "/issue/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<DgciIdentifier>> initDgciBatch(@Valid @RequestBody DgciBatchInit dgciBatchInit) {
+        return ResponseEntity.ok(dgciService.initDgciBatch(dgciBatchInit));
+    }
+
+    @Operation(
+        summary = "Completes the issuing process for a batch of DGCIs",
+        description = "calculate cose signatures for the given certificate hashes, generate TANs and update "
+            + "DGCI Registry database in one transaction, the result contains signature data or error per item"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "batch processed, errors are reported per item"),
+        @ApiResponse(responseCode = "400", description = "wrong batch size"),
+        @ApiResponse(responseCode = "503", description = "signing overloaded, retry later")})
+    @PutMapping(value = "/issue/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<DgciBatchIssueResult>> finalizeDgciBatch(
+        @RequestBody List<DgciBatchIssueItem> items) {
+        return ResponseEntity.ok(dgciService.finishDgciBatch(items));
+    }
+
     @Operation(
         summary = "Completes the issuing process",
         description = "calculate cose signature for given certificate hash, "
@@ -5,12 +5,15 @@ import eu.europa.ec.dgc.issuance.restapi.dto.DidDocument;
 import eu.europa.ec.dgc.issuance.service.DgciService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import java.util.Base64;
 import lombok.AllArgsConstructor;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -37,6 +40,7 @@ public class DgciDidController {
     @ApiResponses(value = {
         @ApiResponse(responseCode = "204", description = "dgci exists"),
         @ApiResponse(responseCode = "424", description = "dgci locked"),
+        @ApiResponse(responseCode = "410", description = "dgci revoked"),
         @ApiResponse(responseCode = "404", description = "dgci not found")})
     @RequestMapping(value = "/{dgciHash}",method = RequestMethod.HEAD)
     public ResponseEntity<Void> dgciStatus(
@@ -51,6 +55,9 @@ public class DgciDidController {
             case LOCKED:
                 httpStatus = HttpStatus.LOCKED;
                 break;
+            case REVOKED:
+                httpStatus = HttpStatus.GONE;
+                break;
             case NOT_EXISTS:
                 httpStatus = HttpStatus.NOT_FOUND;
                 break;
@@ -60,15 +67,31 @@ public class DgciDidController {
         return ResponseEntity.status(httpStatus).build();
     }
 
+    /**
+     * DID document.
+     * The document is returned as already serialized JSON from the DID cache. Claim, revocation, lock and purge
+     * only invalidate the cache of the node that handled them, other nodes can serve a stale document or status
+     * for up to issuance.didCache.ttl.
+     *
+     * @param dgciHash hash
+     * @return response
+     */
     @Operation(
         summary = "Returns a DID document",
         description = "Return a DID document"
     )
-    @GetMapping(value = "/{dgciHash}")
-    public ResponseEntity<DidDocument> getDidDocument(
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "DID document",
+            content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                schema = @Schema(implementation = DidDocument.class))),
+        @ApiResponse(responseCode = "404", description = "dgci not found")})
+    @GetMapping(value = "/{dgciHash}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getDidDocument(
         @Parameter(description = "Base64URL encoded SHA-256 hash from dgci alias uvci", required = true)
         @PathVariable(name = "dgciHash") String dgciHash) {
         String dgciHashBase64 = Base64.getEncoder().encodeToString(Base64URL.from(dgciHash).decode());
-        return ResponseEntity.ok(dgciService.getDidDocument(dgciHashBase64));
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(dgciService.getDidDocumentJson(dgciHashBase64));
     }
 }
@@ -0,0 +1,94 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.issuance.restapi.controller;
+
+import eu.europa.ec.dgc.issuance.entity.GreenCertificateType;
+import eu.europa.ec.dgc.issuance.service.DgciExportFilter;
+import eu.europa.ec.dgc.issuance.service.DgciExportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import javax.servlet.http.HttpServletResponse;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/dgci")
+@AllArgsConstructor
+@ConditionalOnExpression("${issuance.endpoints.export:false}")
+public class DgciExportController {
+    private static final String TEXT_CSV_VALUE = "text/csv";
+
+    private final DgciExportService dgciExportService;
+
+    /**
+     * Export the dgci registry.
+     * The rows are streamed while they are read from the database, so the export can be of any size.
+     * This is an operator endpoint and must not be reachable from public networks.
+     */
+    @Operation(
+        summary = "export dgci registry",
+        description = "stream all dgci matching the filter as NDJSON or CSV ordered by id"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "dgci export")})
+    @GetMapping(value = "/export", produces = {MediaType.APPLICATION_NDJSON_VALUE, TEXT_CSV_VALUE})
+    public void export(
+        @Parameter(description = "output format")
+        @RequestParam(name = "format", defaultValue = "NDJSON") DgciExportService.Format format,
+        @Parameter(description = "created at or after, ISO date time")
+        @RequestParam(name = "createdFrom", required = false)
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) ZonedDateTime createdFrom,
+        @Parameter(description = "created before, ISO date time")
+        @RequestParam(name = "createdTo", required = false)
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) ZonedDateTime createdTo,
+        @RequestParam(name = "type", required = false) GreenCertificateType type,
+        @RequestParam(name = "claimed", required = false) Boolean claimed,
+        @RequestParam(name = "revoked", required = false) Boolean revoked,
+        @RequestParam(name = "locked", required = false) Boolean locked,
+        HttpServletResponse response) throws IOException {
+        DgciExportFilter filter = new DgciExportFilter();
+        filter.setCreatedFrom(createdFrom);
+        filter.setCreatedTo(createdTo);
+        filter.setGreenCertificateType(type);
+        filter.setClaimed(claimed);
+        filter.setRevoked(revoked);
+        filter.setLocked(locked);
+
+        boolean csv = format == DgciExportService.Format.CSV;
+        response.setContentType(csv ? TEXT_CSV_VALUE : MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+            "attachment; filename=\"dgci." + (csv ? "csv" : "ndjson") + "\"");
+        dgciExportService.export(filter, format, response.getOutputStream());
+    }
+}
@@ -0,0 +1,81 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.issuance.restapi.controller;
+
+import eu.europa.ec.dgc.issuance.restapi.dto.DgciRevocationRequest;
+import eu.europa.ec.dgc.issuance.service.DgciRevocationService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import java.io.IOException;
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.Valid;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/dgci/revocation")
+@AllArgsConstructor
+@ConditionalOnExpression("${issuance.endpoints.revocation:false}")
+public class DgciRevocationController {
+    private final DgciRevocationService dgciRevocationService;
+
+    @Operation(
+        summary = "revoke, lock or unlock dgci",
+        description = "apply the action to the given dgci and dgci hashes"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "action applied, number of updated dgci returned"),
+        @ApiResponse(responseCode = "400", description = "wrong request")})
+    @PostMapping(value = "", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<DgciRevocationService.Result> apply(
+        @Valid @RequestBody DgciRevocationRequest revocationRequest) {
+        return ResponseEntity.ok(dgciRevocationService.apply(revocationRequest.getAction(),
+            revocationRequest.getDgcis(), revocationRequest.getDgciHashes()));
+    }
+
+    /**
+     * Apply an action to a file of dgci hashes.
+     * The request body is read as a stream and applied in chunks, so it can contain any number of hashes.
+     */
+    @Operation(
+        summary = "revoke, lock or unlock many dgci",
+        description = "apply the action to a text file of Base64 or Base64URL encoded dgci hashes, one per line"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "action applied, number of updated dgci returned")})
+    @PostMapping(value = "/bulk", consumes = MediaType.TEXT_PLAIN_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<DgciRevocationService.Result> applyBulk(
+        @Parameter(description = "action", required = true)
+        @RequestParam(name = "action") DgciRevocationService.Action action,
+        HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(dgciRevocationService.apply(action, request.getInputStream()));
+    }
+}
@@ -0,0 +1,118 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.issuance.restapi.controller;
+
+import eu.europa.ec.dgc.issuance.service.RevocationListService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+@RestController
+@RequestMapping("/dgci/revocation-list")
+@AllArgsConstructor
+@ConditionalOnExpression("${issuance.endpoints.revocationList:false}")
+public class RevocationListController {
+    private static final String VERSION_HEADER = "X-Revocation-List-Version";
+
+    private final RevocationListService revocationListService;
+
+    /**
+     * Full revocation list.
+     * The body is a resource, so range requests are answered with 206 and the requested ranges.
+     *
+     * @param webRequest request for the etag check
+     * @return response
+     */
+    @Operation(
+        summary = "revocation list",
+        description = "sorted hash prefixes of all revoked dgci with bloom filter header, supports range requests"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "revocation list"),
+        @ApiResponse(responseCode = "206", description = "requested ranges of the revocation list"),
+        @ApiResponse(responseCode = "304", description = "revocation list not modified"),
+        @ApiResponse(responseCode = "503", description = "revocation list not built yet")})
+    @GetMapping(value = "", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Resource> getRevocationList(WebRequest webRequest) {
+        RevocationListService.RevocationList revocationList = revocationListService.getRevocationList();
+        if (revocationList == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return blobResponse(webRequest, revocationList.getEtag(), revocationList.getVersion(),
+            revocationList.getBlob());
+    }
+
+    /**
+     * Revocation list delta.
+     *
+     * @param since version of the list the client has
+     * @param webRequest request for the etag check
+     * @return response
+     */
+    @Operation(
+        summary = "revocation list delta",
+        description = "hash prefixes of dgci revoked since the given version, without bloom filter"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "revocation list delta"),
+        @ApiResponse(responseCode = "304", description = "revocation list delta not modified"),
+        @ApiResponse(responseCode = "503", description = "revocation list not built yet")})
+    @GetMapping(value = "/delta", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Resource> getDelta(
+        @Parameter(description = "version of the list the client has, epoch millis", required = true)
+        @RequestParam(name = "since") long since,
+        WebRequest webRequest) {
+        RevocationListService.RevocationList revocationList = revocationListService.getRevocationList();
+        byte[] delta = revocationListService.getDelta(since);
+        if (revocationList == null || delta == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return blobResponse(webRequest, RevocationListService.etag(delta), revocationList.getVersion(), delta);
+    }
+
+    private static ResponseEntity<Resource> blobResponse(WebRequest webRequest, String etag, long version,
+                                                         byte[] blob) {
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+            .eTag(etag)
+            .cacheControl(CacheControl.noCache())
+            .header(VERSION_HEADER, Long.toString(version))
+            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+            .body(new ByteArrayResource(blob));
+    }
+}
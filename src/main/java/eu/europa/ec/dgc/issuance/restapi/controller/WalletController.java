@@ -50,6 +50,7 @@ public class WalletController {
     @ApiResponses(value = {
         @ApiResponse(responseCode = "204", description = "successful claim"),
         @ApiResponse(responseCode = "404", description = "dgci not found"),
+        @ApiResponse(responseCode = "409", description = "concurrent claim of the dgci"),
         @ApiResponse(responseCode = "400", description = "wrong claim data")})
     @PostMapping(value = "/claim", consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<ClaimResponse> claim(@Valid @RequestBody ClaimRequest claimRequest) {
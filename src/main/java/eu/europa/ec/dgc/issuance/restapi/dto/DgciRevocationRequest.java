@@ -0,0 +1,41 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.issuance.restapi.dto;
+
+import eu.europa.ec.dgc.issuance.service.DgciRevocationService;
+import java.util.List;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import lombok.Data;
+
+@Data
+public class DgciRevocationRequest {
+    @NotNull
+    private DgciRevocationService.Action action;
+    @Size(max = 10000)
+    private List<String> dgcis;
+    /**
+     * Base64 or Base64URL encoded SHA-256 hashes of dgci.
+     */
+    @Size(max = 10000)
+    private List<String> dgciHashes;
+}
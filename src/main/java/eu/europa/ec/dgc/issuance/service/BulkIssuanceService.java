@@ -0,0 +1,246 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.issuance.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
+import eu.europa.ec.dgc.issuance.entity.DgciEntity;
+import eu.europa.ec.dgc.issuance.repository.DgciRepository;
+import eu.europa.ec.dgc.issuance.restapi.dto.BulkIssueResult;
+import eu.europa.ec.dgc.issuance.restapi.dto.EgdcCodeData;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Backend issuing of many certificates in one request.
+ * The certificates are read as a stream and processed in chunks: the certificates of a chunk are encoded
+ * and signed in parallel on a bounded worker pool, persisted with one batched saveAll and the results
+ * are written as NDJSON before the next chunk is read. A failing certificate produces an error entry
+ * and does not stop the other certificates. Certificates rejected by a full signing queue are retried with backoff.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnExpression("${issuance.endpoints.backendIssuing:false}")
+public class BulkIssuanceService {
+    private static final byte NEW_LINE = '\n';
+
+    private final DgciService dgciService;
+    private final DgciRepository dgciRepository;
+    private final DgciHashFilter dgciHashFilter;
+    private final IssuanceConfigProperties issuanceConfigProperties;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ThreadPoolExecutor executor;
+
+    /**
+     * Create the worker pool.
+     * When all workers are busy and the queue is full the submitting request thread encodes the certificate
+     * itself, which slows down the reading of the request.
+     */
+    @PostConstruct
+    public void startExecutor() {
+        int threads = issuanceConfigProperties.getBulk().getThreads();
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, issuanceConfigProperties.getBulk().getChunkSize())),
+            new CustomizableThreadFactory("bulk-issuance-"), new ThreadPoolExecutor.CallerRunsPolicy());
+        log.info("bulk issuance started with {} worker threads", threads);
+    }
+
+    @PreDestroy
+    public void stopExecutor() {
+        executor.shutdown();
+    }
+
+    /**
+     * Issue certificates given as NDJSON, one DCC JSON per line.
+     *
+     * @param ndjson request body
+     * @param out results as NDJSON, one entry per input line in input order
+     * @throws IOException if the results can not be written
+     */
+    public void createEdgcFromNdjson(InputStream ndjson, OutputStream out) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(ndjson, StandardCharsets.UTF_8));
+        try (Stream<String> lines = reader.lines()) {
+            createEdgcBulk(lines.filter(line -> !line.isBlank()).iterator(), out);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Issue certificates given as JSON array of DCC JSON objects.
+     *
+     * @param jsonArray request body
+     * @param out results as NDJSON, one entry per array element in input order
+     * @throws IOException if the input is not a JSON array or the results can not be written
+     */
+    public void createEdgcFromJsonArray(InputStream jsonArray, OutputStream out) throws IOException {
+        Iterator<JsonNode> nodes = objectMapper.readerFor(JsonNode.class).readValues(jsonArray);
+        createEdgcBulk(new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return nodes.hasNext();
+            }
+
+            @Override
+            public String next() {
+                return nodes.next().toString();
+            }
+        }, out);
+    }
+
+    private void createEdgcBulk(Iterator<String> dccJsons, OutputStream out) throws IOException {
+        int chunkSize = Math.max(1, issuanceConfigProperties.getBulk().getChunkSize());
+        List<String> chunk = new ArrayList<>(chunkSize);
+        int index = 0;
+        while (true) {
+            try {
+                if (!dccJsons.hasNext()) {
+                    break;
+                }
+                chunk.add(dccJsons.next());
+            } catch (RuntimeException e) {
+                // unreadable input, the already read certificates are still issued
+                processChunk(chunk, index, out);
+                writeResult(errorResult(index + chunk.size(), "can not read input: " + e.getMessage()), out);
+                return;
+            }
+            if (chunk.size() == chunkSize) {
+                index += processChunk(chunk, index, out);
+                chunk.clear();
+            }
+        }
+        processChunk(chunk, index, out);
+    }
+
+    private int processChunk(List<String> chunk, int firstIndex, OutputStream out) throws IOException {
+        List<Future<DgciService.PreparedEdgc>> futures = new ArrayList<>(chunk.size());
+        for (String dccJson : chunk) {
+            futures.add(executor.submit(() -> prepareEdgc(dccJson)));
+        }
+        List<BulkIssueResult> results = new ArrayList<>(chunk.size());
+        List<DgciEntity> dgciEntities = new ArrayList<>(chunk.size());
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                DgciService.PreparedEdgc preparedEdgc = futures.get(i).get();
+                dgciEntities.add(preparedEdgc.getDgciEntity());
+                results.add(successResult(firstIndex + i, preparedEdgc.getEgdcCodeData()));
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                log.debug("bulk certificate {} failed", firstIndex + i, cause);
+                // exceptions without message, e.g. NullPointerException, are reported by their type
+                results.add(errorResult(firstIndex + i,
+                    Objects.toString(cause.getMessage(), cause.getClass().getSimpleName())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("bulk issuance interrupted", e);
+            }
+        }
+        if (!dgciEntities.isEmpty()) {
+            try {
+                dgciRepository.saveAll(dgciEntities);
+                dgciEntities.forEach(dgciEntity -> dgciHashFilter.add(dgciEntity.getDgciHash()));
+            } catch (RuntimeException e) {
+                log.error("can not persist bulk certificates {} to {}", firstIndex, firstIndex + chunk.size() - 1, e);
+                for (int i = 0; i < results.size(); i++) {
+                    if (results.get(i).getError() == null) {
+                        results.set(i, errorResult(firstIndex + i, "can not persist certificate"));
+                    }
+                }
+            }
+        }
+        for (BulkIssueResult result : results) {
+            writeResult(result, out);
+        }
+        out.flush();
+        return chunk.size();
+    }
+
+    /**
+     * Bulk issuing is not latency sensitive, so a certificate rejected by a full signing queue waits and is
+     * retried instead of failing while frontend requests fill the queue.
+     */
+    private DgciService.PreparedEdgc prepareEdgc(String dccJson) throws InterruptedException {
+        IssuanceConfigProperties.Bulk config = issuanceConfigProperties.getBulk();
+        long maxBackoff = issuanceConfigProperties.getExecution().getRetryAfter().toMillis();
+        long backoff = config.getOverloadBackoff().toMillis();
+        int attempt = 1;
+        while (true) {
+            try {
+                return dgciService.prepareEdgc(dccJson);
+            } catch (SigningOverloaded e) {
+                if (attempt >= config.getOverloadRetries()) {
+                    throw e;
+                }
+            }
+            Thread.sleep(backoff);
+            backoff = Math.min(backoff * 2, Math.max(maxBackoff, config.getOverloadBackoff().toMillis()));
+            attempt++;
+        }
+    }
+
+    private void writeResult(BulkIssueResult result, OutputStream out) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(result));
+        out.write(NEW_LINE);
+    }
+
+    private BulkIssueResult successResult(int index, EgdcCodeData egdcCodeData) {
+        BulkIssueResult result = new BulkIssueResult();
+        result.setIndex(index);
+        result.setDgci(egdcCodeData.getDgci());
+        result.setQrCode(egdcCodeData.getQrCode());
+        result.setTan(egdcCodeData.getTan());
+        return result;
+    }
+
+    private BulkIssueResult errorResult(int index, String error) {
+        BulkIssueResult result = new BulkIssueResult();
+        result.setIndex(index);
+        result.setError(error);
+        return result;
+    }
+}
@@ -22,8 +22,11 @@ public class CertKeyPublisherServiceImpl implements CertKeyPublisherService {
             log.info("start publish certificate to gateway");
             DgcGatewayUploadConnector connector = dgcGatewayUploadConnector.get();
             try {
-                connector.uploadTrustedCertificate(certificateService.getCertficate());
-                log.info("certificate uploaded to gateway");
+                // all configured keys, so certificates of retired keys stay verifiable while they are rolled
+                for (SigningKey signingKey : certificateService.getSigningKeys()) {
+                    connector.uploadTrustedCertificate(signingKey.getCertificate());
+                    log.info("certificate {} uploaded to gateway", signingKey.getKidBase64());
+                }
             } catch (DgcGatewayUploadConnector.DgcCertificateUploadException e) {
                 log.error("can not upload certificate to gateway", e);
                 throw new DdcGatewayException("error during gateway connector communication", e);
@@ -6,5 +6,27 @@ import java.security.cert.Certificate;
 public interface CertificatePrivateKeyProvider {
     Certificate getCertificate();
 
+    /**
+     * Certificate of a further signing key, see issuance.signingKeys.
+     * Providers that only know the issuer key return null.
+     *
+     * @param alias alias of the key
+     * @return certificate or null if the alias is unknown
+     */
+    default Certificate getCertificate(String alias) {
+        return null;
+    }
+
     PrivateKey getPrivateKey();
+
+    /**
+     * Private key of a further signing key, see issuance.signingKeys.
+     * Providers that only know the issuer key return null.
+     *
+     * @param alias alias of the key
+     * @return private key or null if the alias is unknown
+     */
+    default PrivateKey getPrivateKey(String alias) {
+        return null;
+    }
 }
@@ -20,95 +20,240 @@
 
 package eu.europa.ec.dgc.issuance.service;
 
-import COSE.AlgorithmID;
-import eu.europa.ec.dgc.utils.CertificateUtils;
+import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
-import java.security.interfaces.ECPublicKey;
-import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import javax.annotation.PostConstruct;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
+/**
+ * Signing keys of the issuer.
+ * The key of certAlias is the primary key, further active keys are configured by issuance.signingKeys.aliases.
+ * New certificates get one of the active keys. Reservations of frontend issuing are spread round robin,
+ * backend issuing selects round robin or by the least running signatures.
+ * Retired keys are not selected anymore, but still sign certificates that were reserved with them.
+ */
 @Component
 @Slf4j
 public class CertificateService {
     private final CertificatePrivateKeyProvider certificatePrivateKeyProvider;
     private final SigningService signingService;
-    private byte[] kid;
+    private final SigningExecutor signingExecutor;
+    private final IssuanceConfigProperties issuanceConfigProperties;
+    private final AtomicInteger nextKey = new AtomicInteger();
+    private SigningKey primaryKey;
+    private List<SigningKey> activeKeys;
+    private Map<String, SigningKey> keysByKid;
 
+    /**
+     * Constructor.
+     */
     @Autowired
     public CertificateService(@Qualifier("issuerKeyProvider") CertificatePrivateKeyProvider
-                                      certificatePrivateKeyProvider, SigningService signingService) {
+                                      certificatePrivateKeyProvider, SigningService signingService,
+                              SigningExecutor signingExecutor, IssuanceConfigProperties issuanceConfigProperties) {
         this.certificatePrivateKeyProvider = certificatePrivateKeyProvider;
         this.signingService = signingService;
+        this.signingExecutor = signingExecutor;
+        this.issuanceConfigProperties = issuanceConfigProperties;
     }
 
     /**
      * compute kid.
-     * key identifier needed for cose
+     * key identifier needed for cose, computed for every signing key
      */
     @PostConstruct
     public void computeKid() {
-        CertificateUtils certificateUtils = new CertificateUtils();
-        String kidBase64 = certificateUtils.getCertKid(getCertficate());
-        kid = Base64.getDecoder().decode(kidBase64);
+        primaryKey = new SigningKey(issuanceConfigProperties.getCertAlias(),
+            (X509Certificate) certificatePrivateKeyProvider.getCertificate(),
+            certificatePrivateKeyProvider.getPrivateKey(), true);
+        List<SigningKey> active = new ArrayList<>();
+        active.add(primaryKey);
+        Map<String, SigningKey> byKid = new LinkedHashMap<>();
+        byKid.put(primaryKey.getKidBase64(), primaryKey);
+        for (String alias : issuanceConfigProperties.getSigningKeys().getAliases()) {
+            SigningKey signingKey = loadSigningKey(alias, true);
+            if (byKid.putIfAbsent(signingKey.getKidBase64(), signingKey) == null) {
+                active.add(signingKey);
+            }
+        }
+        for (String alias : issuanceConfigProperties.getSigningKeys().getRetiredAliases()) {
+            SigningKey signingKey = loadSigningKey(alias, false);
+            byKid.putIfAbsent(signingKey.getKidBase64(), signingKey);
+        }
+        activeKeys = Collections.unmodifiableList(active);
+        keysByKid = Collections.unmodifiableMap(byKid);
+        if (byKid.size() > 1) {
+            log.info("{} active signing keys, {} retired, selection {}", activeKeys.size(),
+                byKid.size() - activeKeys.size(), issuanceConfigProperties.getSigningKeys().getSelection());
+        }
+    }
+
+    private SigningKey loadSigningKey(String alias, boolean active) {
+        Certificate certificate = certificatePrivateKeyProvider.getCertificate(alias);
+        PrivateKey privateKey = certificatePrivateKeyProvider.getPrivateKey(alias);
+        if (!(certificate instanceof X509Certificate) || privateKey == null) {
+            throw new IllegalArgumentException("signing key " + alias + " not available from the key provider");
+        }
+        return new SigningKey(alias, (X509Certificate) certificate, privateKey, active);
+    }
+
+    /**
+     * Select the key of a reservation (frontend issuing) from the active keys, always round robin.
+     * The signature is requested later by another request, so the running signatures at reservation time say
+     * nothing about the load the reservation will create.
+     *
+     * @return signing key
+     */
+    public SigningKey selectReservationKey() {
+        List<SigningKey> keys = activeKeys;
+        return keys.get(Math.floorMod(nextKey.getAndIncrement(), keys.size()));
+    }
+
+    /**
+     * Select the key for a certificate that is signed right away (backend issuing) from the active keys.
+     * LEAST_LOADED only pays off for keys on PKCS#11 tokens, where each key has its own sessions. Software keys
+     * all run on the same signing threads, their load is balanced by round robin as well.
+     *
+     * @return signing key
+     */
+    public SigningKey selectSigningKey() {
+        List<SigningKey> keys = activeKeys;
+        if (keys.size() == 1) {
+            return keys.get(0);
+        }
+        int start = Math.floorMod(nextKey.getAndIncrement(), keys.size());
+        if (issuanceConfigProperties.getSigningKeys().getSelection()
+            == IssuanceConfigProperties.KeySelection.ROUND_ROBIN) {
+            return keys.get(start);
+        }
+        // least loaded, ties are broken round robin so idle keys are used evenly
+        SigningKey selected = keys.get(start);
+        for (int i = 1; i < keys.size(); i++) {
+            SigningKey candidate = keys.get((start + i) % keys.size());
+            if (candidate.getInFlight() < selected.getInFlight()) {
+                selected = candidate;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Signing key by kid, active or retired.
+     * Certificates reserved before the kid was stored are signed by the primary key.
+     *
+     * @param kidBase64 kid as base64, may be null
+     * @return signing key
+     * @throws DgciConflict if the key is not configured anymore
+     */
+    public SigningKey getSigningKey(String kidBase64) {
+        if (kidBase64 == null) {
+            return primaryKey;
+        }
+        SigningKey signingKey = keysByKid.get(kidBase64);
+        if (signingKey == null) {
+            throw new DgciConflict("signing key " + kidBase64 + " is not available anymore");
+        }
+        return signingKey;
+    }
+
+    /**
+     * All configured signing keys, active and retired, the primary key first.
+     *
+     * @return signing keys
+     */
+    public List<SigningKey> getSigningKeys() {
+        return new ArrayList<>(keysByKid.values());
     }
 
     public byte[] getKid() {
-        return kid;
+        return primaryKey.getKid();
     }
 
     public String getKidAsBase64() {
-        return Base64.getEncoder().encodeToString(kid);
+        return primaryKey.getKidBase64();
     }
 
     public X509Certificate getCertficate() {
-        return (X509Certificate) certificatePrivateKeyProvider.getCertificate();
+        return primaryKey.getCertificate();
     }
 
     public PublicKey getPublicKey() {
-        return certificatePrivateKeyProvider.getCertificate().getPublicKey();
+        return primaryKey.getPublicKey();
     }
 
     public PrivateKey getPrivateKey() {
-        return certificatePrivateKeyProvider.getPrivateKey();
+        return primaryKey.getPrivateKey();
     }
 
     /**
-     * sign hash.
+     * sign hash with the primary key.
+     * The signature is computed on the signing executor.
      *
      * @param base64Hash base64Hash
      * @return signature as base64
      */
     public String signHash(String base64Hash) {
+        return signHash(primaryKey, base64Hash);
+    }
+
+    /**
+     * sign hash.
+     * The signature is computed on the signing executor.
+     *
+     * @param signingKey key to sign with
+     * @param base64Hash base64Hash
+     * @return signature as base64
+     */
+    public String signHash(SigningKey signingKey, String base64Hash) {
         byte[] hashBytes = Base64.getDecoder().decode(base64Hash);
-        byte[] signature = signingService.signHash(hashBytes, certificatePrivateKeyProvider.getPrivateKey());
+        byte[] signature = signingExecutor.call(() -> signingKey.use(
+            () -> signingService.signHash(hashBytes, signingKey.getPrivateKey())));
         return Base64.getEncoder().encodeToString(signature);
     }
 
+    /**
+     * sign many hashes.
+     * The signatures are computed in parallel on the signing executor.
+     *
+     * @param signingKeys key per hash
+     * @param base64Hashes base64 encoded hashes
+     * @return signatures as base64 in order of the hashes
+     */
+    public List<String> signHashes(List<SigningKey> signingKeys, List<String> base64Hashes) {
+        List<Supplier<String>> tasks = new ArrayList<>(base64Hashes.size());
+        for (int i = 0; i < base64Hashes.size(); i++) {
+            byte[] hashBytes = Base64.getDecoder().decode(base64Hashes.get(i));
+            SigningKey signingKey = signingKeys.get(i);
+            tasks.add(() -> Base64.getEncoder().encodeToString(signingKey.use(
+                () -> signingService.signHash(hashBytes, signingKey.getPrivateKey()))));
+        }
+        return signingExecutor.callAll(tasks);
+    }
+
     public byte[] publicKey() {
-        return certificatePrivateKeyProvider.getCertificate().getPublicKey().getEncoded();
+        return primaryKey.getPublicKey().getEncoded();
     }
 
     /**
-     * Method to get the Algorithm Identifier of Public Key.
+     * Method to get the Algorithm Identifier of the primary Public Key.
      *
      * @return CBOR AlgorithmID As Integer
      */
     public int getAlgorithmIdentifier() {
-        PublicKey publicKey = certificatePrivateKeyProvider.getCertificate().getPublicKey();
-        if (publicKey instanceof RSAPublicKey) {
-            return AlgorithmID.RSA_PSS_256.AsCBOR().AsInt32();
-        } else if (publicKey instanceof ECPublicKey) {
-            return AlgorithmID.ECDSA_256.AsCBOR().AsInt32();
-        } else {
-            throw new IllegalArgumentException("unsupported key type");
-        }
+        return primaryKey.getAlgorithmIdentifier();
     }
 }
@@ -0,0 +1,150 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.issuance.service;
+
+import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
+import eu.europa.ec.dgc.issuance.entity.DgciEntity;
+import eu.europa.ec.dgc.issuance.repository.DgciRepository;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counter of failed claim attempts per dgci.
+ * By default every failed attempt is one atomic conditional update of retry_counter, without reading
+ * or writing the rest of the entity. In buffered mode failed attempts are counted in memory and flushed
+ * as one JDBC batch every flush interval; the attempt reaching {@link #MAX_CLAIM_RETRY_TAN} is always
+ * written through, so the cap is enforced by the database as soon as it is reached.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ClaimRetryCounter {
+    public static final int MAX_CLAIM_RETRY_TAN = 3;
+
+    private static final String INCREMENT_SQL =
+        "UPDATE dgci SET retry_counter = retry_counter + ? WHERE dgci = ? AND retry_counter <= ?";
+
+    private final DgciRepository dgciRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final IssuanceConfigProperties issuanceConfigProperties;
+    private final TaskScheduler taskScheduler;
+
+    private final Map<String, Integer> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Schedule flushing of buffered attempts.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        IssuanceConfigProperties.ClaimRetry config = issuanceConfigProperties.getClaimRetry();
+        if (config.isBuffered()) {
+            taskScheduler.scheduleWithFixedDelay(this::flush, config.getFlushInterval());
+        }
+    }
+
+    /**
+     * Check if the dgci has no claim attempts left.
+     *
+     * @param dgciEntity dgci as read from database
+     * @return true if the maximum number of failed attempts is exceeded
+     */
+    public boolean isExceeded(DgciEntity dgciEntity) {
+        return dgciEntity.getRetryCounter() + pendingFailures(dgciEntity.getDgci()) > MAX_CLAIM_RETRY_TAN;
+    }
+
+    /**
+     * Failed attempts of the dgci not yet written to database.
+     *
+     * @param dgci dgci
+     * @return number of buffered failed attempts
+     */
+    public int pendingFailures(String dgci) {
+        return pending.getOrDefault(dgci, 0);
+    }
+
+    /**
+     * Count a failed claim attempt.
+     *
+     * @param dgciEntity dgci as read from database
+     */
+    public void registerFailure(DgciEntity dgciEntity) {
+        if (!issuanceConfigProperties.getClaimRetry().isBuffered()) {
+            dgciRepository.incrementRetryCounter(dgciEntity.getDgci(), 1, MAX_CLAIM_RETRY_TAN);
+            return;
+        }
+        int pendingCount = pending.merge(dgciEntity.getDgci(), 1, Integer::sum);
+        if (dgciEntity.getRetryCounter() + pendingCount >= MAX_CLAIM_RETRY_TAN) {
+            writeThrough(dgciEntity.getDgci());
+        }
+    }
+
+    /**
+     * Forget buffered attempts after a successful claim, the claim resets retry_counter itself.
+     *
+     * @param dgci claimed dgci
+     */
+    public void reset(String dgci) {
+        pending.remove(dgci);
+    }
+
+    private void writeThrough(String dgci) {
+        Integer count = pending.remove(dgci);
+        if (count != null) {
+            dgciRepository.incrementRetryCounter(dgci, count, MAX_CLAIM_RETRY_TAN);
+        }
+    }
+
+    /**
+     * Write all buffered attempts in one batch.
+     */
+    @PreDestroy
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Object[]> batch = new ArrayList<>();
+        for (String dgci : pending.keySet()) {
+            Integer count = pending.remove(dgci);
+            if (count != null) {
+                batch.add(new Object[] {count, dgci, MAX_CLAIM_RETRY_TAN});
+            }
+        }
+        try {
+            jdbcTemplate.batchUpdate(INCREMENT_SQL, batch);
+            log.debug("flushed failed claim attempts of {} dgci", batch.size());
+        } catch (RuntimeException e) {
+            log.error("can not flush failed claim attempts, retry with next flush", e);
+            for (Object[] args : batch) {
+                pending.merge((String) args[1], (Integer) args[0], Integer::sum);
+            }
+        }
+    }
+}
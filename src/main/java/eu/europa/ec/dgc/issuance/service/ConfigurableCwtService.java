@@ -27,13 +27,23 @@ public class ConfigurableCwtService implements CwtService {
     @NotNull
     @Override
     public byte[] encode(@NotNull byte[] bytes) {
-        CBORObject cwtMap = CBORObject.NewMap();
-        cwtMap.Add(CwtHeaderKeys.ISSUER.getIntVal(), issuanceConfigProperties.getCountryCode());
         CBORObject dcc = CBORObject.DecodeFromBytes(bytes);
         GreenCertificate greenCertificate = Json.Default.decodeFromString(GreenCertificate.Companion.serializer(),
             dcc.ToJSONString());
-        ExpirationService.CwtTimeFields cwtTimes = expirationService.calculateCwtExpiration(greenCertificate);
+        return encode(dcc, expirationService.calculateCwtExpiration(greenCertificate));
+    }
 
+    /**
+     * Encode the CWT for an already decoded DCC with already calculated time fields.
+     * Used by the issuing chain, which knows the parsed certificate and must not parse it again.
+     *
+     * @param dcc the DCC payload as CBOR
+     * @param cwtTimes issued at and expiration of the CWT
+     * @return CWT bytes
+     */
+    public byte[] encode(CBORObject dcc, ExpirationService.CwtTimeFields cwtTimes) {
+        CBORObject cwtMap = CBORObject.NewMap();
+        cwtMap.Add(CwtHeaderKeys.ISSUER.getIntVal(), issuanceConfigProperties.getCountryCode());
         cwtMap.Add(CwtHeaderKeys.ISSUED_AT.getIntVal(), cwtTimes.issuedAt);
         cwtMap.Add(CwtHeaderKeys.EXPIRATION.getIntVal(), cwtTimes.expiration);
         CBORObject hcertMap = CBORObject.NewMap();
@@ -1,14 +1,29 @@
 package eu.europa.ec.dgc.issuance.service;
 
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
+import eu.europa.ec.dgc.issuance.utils.HashUtil;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
@@ -20,7 +35,10 @@ import org.springframework.stereotype.Component;
 @ConditionalOnExpression("${issuance.endpoints.wallet:false}")
 public class ContextService {
     private final IssuanceConfigProperties issuanceConfigProperties;
-    private JsonNode contextDefinition;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private volatile SerializedContext context;
+    private WatchService watchService;
+    private Thread watchThread;
 
     /**
      * load json context file.
@@ -31,15 +49,10 @@ public class ContextService {
             if (issuanceConfigProperties.getContextFile() != null
                 && issuanceConfigProperties.getContextFile().length() > 0) {
                 File contextFile = new File(issuanceConfigProperties.getContextFile());
-                if (!contextFile.isFile()) {
-                    throw new IllegalArgumentException("configured context file can not be found: " + contextFile);
-                }
-                ObjectMapper mapper = new ObjectMapper();
-                try {
-                    contextDefinition = mapper.readTree(contextFile);
-                    log.info("context file loaded from: " + contextFile);
-                } catch (IOException e) {
-                    throw new IllegalArgumentException("can not read json context file: " + contextFile, e);
+                context = serialize(readContextFile(contextFile));
+                log.info("context file loaded from: " + contextFile);
+                if (issuanceConfigProperties.getContextCache().isWatchFile()) {
+                    startWatching(contextFile);
                 }
             } else {
                 log.warn("the context json file not configured (property: issuance.contextFile)."
@@ -48,12 +61,11 @@ public class ContextService {
                 ObjectNode contextObj = jsonNodeFactory.objectNode();
                 contextObj.set("Origin", jsonNodeFactory.textNode(issuanceConfigProperties.getCountryCode()));
                 contextObj.set("versions", jsonNodeFactory.objectNode());
-                contextDefinition = contextObj;
+                context = serialize(contextObj);
             }
         } else {
-            ObjectMapper mapper = new ObjectMapper();
             try {
-                contextDefinition = mapper.readTree(issuanceConfigProperties.getContextData());
+                context = serialize(objectMapper.readTree(issuanceConfigProperties.getContextData()));
                 log.info("context file loaded from Environment variable 'ContextData'");
             } catch (IOException e) {
                 throw new IllegalArgumentException("can not read json from Environment variable 'ContextData'", e);
@@ -63,7 +75,172 @@ public class ContextService {
 
     }
 
+    /**
+     * Stop watching the context file.
+     */
+    @PreDestroy
+    public void stopWatching() {
+        if (watchThread != null) {
+            watchThread.interrupt();
+        }
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.warn("can not close context file watcher", e);
+            }
+        }
+    }
+
     public JsonNode getContextDefinition() {
-        return contextDefinition;
+        return context.getJson();
+    }
+
+    /**
+     * Current context with its serialized representations.
+     * The instance is immutable and replaced as a whole when the context file is reloaded.
+     *
+     * @return serialized context
+     */
+    public SerializedContext getSerializedContext() {
+        return context;
+    }
+
+    /**
+     * Reload the context file.
+     * The current context is kept if the file is missing or not valid json, e.g. while it is written.
+     *
+     * @return true if the context has changed
+     */
+    public boolean reloadContextFile() {
+        File contextFile = new File(issuanceConfigProperties.getContextFile());
+        SerializedContext reloaded;
+        try {
+            reloaded = serialize(readContextFile(contextFile));
+        } catch (IllegalArgumentException e) {
+            log.warn("context file {} not reloaded, keeping current context: {}", contextFile, e.getMessage());
+            return false;
+        }
+        if (reloaded.getEtag().equals(context.getEtag())) {
+            return false;
+        }
+        context = reloaded;
+        log.info("context file reloaded from: {}, etag {}", contextFile, reloaded.getEtag());
+        return true;
+    }
+
+    private JsonNode readContextFile(File contextFile) {
+        if (!contextFile.isFile()) {
+            throw new IllegalArgumentException("configured context file can not be found: " + contextFile);
+        }
+        try {
+            return objectMapper.readTree(contextFile);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("can not read json context file: " + contextFile, e);
+        }
+    }
+
+    private SerializedContext serialize(JsonNode json) {
+        try {
+            return new SerializedContext(json, objectMapper.writeValueAsBytes(json));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("can not serialize context json", e);
+        }
+    }
+
+    /**
+     * The parent directory is watched instead of the file, so replacing the file by rename
+     * (editors, kubernetes config map updates with symlink swap) is noticed as well.
+     */
+    private void startWatching(File contextFile) {
+        Path directory = contextFile.getAbsoluteFile().toPath().getParent();
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            log.warn("can not watch context file {}, hot reload is disabled", contextFile, e);
+            return;
+        }
+        watchThread = new Thread(this::watch, "context-file-watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+        log.info("watching context file {} for changes", contextFile);
+    }
+
+    private void watch() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                // all events of the directory are handled by one reload, unchanged content is detected by etag
+                key.pollEvents();
+                reloadContextFile();
+                if (!key.reset()) {
+                    log.warn("context file directory is no longer accessible, hot reload is stopped");
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            log.debug("context file watcher closed");
+        }
+    }
+
+    /**
+     * Context json serialized once, with gzip variant and strong etags.
+     */
+    @Getter
+    public static class SerializedContext {
+        private final JsonNode json;
+        private final byte[] body;
+        private final String etag;
+        /**
+         * Gzip compressed body, null if compression does not make it smaller.
+         */
+        private final byte[] gzipBody;
+        private final String gzipEtag;
+
+        SerializedContext(JsonNode json, byte[] body) {
+            this.json = json;
+            this.body = body;
+            String hash = Base64.getUrlEncoder().withoutPadding().encodeToString(HashUtil.sha256(body));
+            etag = "\"" + hash + "\"";
+            byte[] compressed = gzip(body);
+            if (compressed.length < body.length) {
+                gzipBody = compressed;
+                gzipEtag = "\"" + hash + "-gzip\"";
+            } else {
+                gzipBody = null;
+                gzipEtag = null;
+            }
+        }
+
+        /**
+         * Check an If-None-Match header against the etags of this context.
+         * Both representations match, they have the same content.
+         *
+         * @param ifNoneMatch header value, may be null
+         * @return true if the client has the current context
+         */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            return Arrays.stream(ifNoneMatch.split(","))
+                .map(String::trim)
+                .map(tag -> tag.startsWith("W/") ? tag.substring(2) : tag)
+                .anyMatch(tag -> "*".equals(tag) || tag.equals(etag) || tag.equals(gzipEtag));
+        }
+
+        private static byte[] gzip(byte[] data) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 32);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(data);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        }
     }
 }
@@ -0,0 +1,45 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.issuance.service;
+
+import eu.europa.ec.dgc.issuance.entity.GreenCertificateType;
+import java.time.ZonedDateTime;
+import lombok.Data;
+
+/**
+ * Filter of a dgci export, null fields are not filtered.
+ */
+@Data
+public class DgciExportFilter {
+    /**
+     * Inclusive lower bound of created_at.
+     */
+    private ZonedDateTime createdFrom;
+    /**
+     * Exclusive upper bound of created_at.
+     */
+    private ZonedDateTime createdTo;
+    private GreenCertificateType greenCertificateType;
+    private Boolean claimed;
+    private Boolean revoked;
+    private Boolean locked;
+}
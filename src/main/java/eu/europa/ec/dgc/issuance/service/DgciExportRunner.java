@@ -0,0 +1,91 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.issuance.service;
+
+import eu.europa.ec.dgc.issuance.entity.GreenCertificateType;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Command line mode of the dgci export.
+ * Started with --dgci-export.output=FILE, the export is written to the file and the application exits.
+ * Optional filters: --dgci-export.format=NDJSON|CSV, --dgci-export.created-from=ISO date time,
+ * --dgci-export.created-to=ISO date time, --dgci-export.type=Vaccination|Recovery|Test,
+ * --dgci-export.claimed=true|false, --dgci-export.revoked=true|false, --dgci-export.locked=true|false.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty("dgci-export.output")
+public class DgciExportRunner implements ApplicationRunner {
+    private final DgciExportService dgciExportService;
+    private final Environment environment;
+    private final ConfigurableApplicationContext applicationContext;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        int exitCode = 0;
+        try {
+            Path output = Path.of(environment.getRequiredProperty("dgci-export.output"));
+            DgciExportService.Format format = environment.getProperty("dgci-export.format",
+                DgciExportService.Format.class, DgciExportService.Format.NDJSON);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output))) {
+                long count = dgciExportService.export(readFilter(), format, out);
+                log.info("dgci export of {} rows written to {}", count, output);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("dgci export failed", e);
+            exitCode = 1;
+        }
+        int code = exitCode;
+        System.exit(SpringApplication.exit(applicationContext, () -> code));
+    }
+
+    private DgciExportFilter readFilter() {
+        DgciExportFilter filter = new DgciExportFilter();
+        filter.setCreatedFrom(readDateTime("dgci-export.created-from"));
+        filter.setCreatedTo(readDateTime("dgci-export.created-to"));
+        filter.setGreenCertificateType(environment.getProperty("dgci-export.type", GreenCertificateType.class));
+        filter.setClaimed(environment.getProperty("dgci-export.claimed", Boolean.class));
+        filter.setRevoked(environment.getProperty("dgci-export.revoked", Boolean.class));
+        filter.setLocked(environment.getProperty("dgci-export.locked", Boolean.class));
+        return filter;
+    }
+
+    private ZonedDateTime readDateTime(String property) {
+        String value = environment.getProperty(property);
+        return value == null || value.isBlank() ? null : ZonedDateTime.parse(value);
+    }
+}
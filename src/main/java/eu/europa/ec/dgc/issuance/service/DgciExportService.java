@@ -0,0 +1,253 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.issuance.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Export of the dgci table as NDJSON or CSV for reconciliation with other registries.
+ * The rows are read with plain JDBC from a server side cursor with a bounded fetch size and written
+ * one by one, no entities are created, so the memory does not depend on the number of exported rows.
+ * The TAN hash and the wallet public key are not exported.
+ */
+@Slf4j
+@Service
+public class DgciExportService {
+    private static final String[] COLUMNS = {
+        "id", "dgci", "dgciHash", "createdAt", "expiresAt", "certHash", "greenCertificateType",
+        "claimed", "revoked", "locked"
+    };
+    private static final String SELECT_SQL = "SELECT id, dgci, dgci_hash, created_at, expires_at, cert_hash,"
+        + " green_certificate_type, claimed, revoked, locked FROM dgci";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param dataSource data source
+     * @param transactionManager transaction manager, the cursor is only kept open within a transaction
+     * @param issuanceConfigProperties config
+     */
+    public DgciExportService(DataSource dataSource, PlatformTransactionManager transactionManager,
+                             IssuanceConfigProperties issuanceConfigProperties) {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(issuanceConfigProperties.getExport().getFetchSize());
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Write all dgci matching the filter ordered by id.
+     *
+     * @param filter filter
+     * @param format output format
+     * @param out target, it is flushed but not closed
+     * @return number of exported rows
+     * @throws IOException if the output can not be written
+     */
+    public long export(DgciExportFilter filter, Format format, OutputStream out) throws IOException {
+        StringBuilder sql = new StringBuilder(SELECT_SQL);
+        List<Object> params = new ArrayList<>();
+        appendConditions(filter, sql, params);
+        sql.append(" ORDER BY id");
+
+        RowWriter rowWriter = format == Format.CSV ? new CsvRowWriter(out) : new NdjsonRowWriter(jsonFactory, out);
+        long[] count = new long[1];
+        try {
+            rowWriter.start();
+            transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.query(sql.toString(), rs -> {
+                    try {
+                        rowWriter.write(rs);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    count[0]++;
+                }, params.toArray()));
+            rowWriter.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        log.info("exported {} dgci as {}", count[0], format);
+        return count[0];
+    }
+
+    private static void appendConditions(DgciExportFilter filter, StringBuilder sql, List<Object> params) {
+        List<String> conditions = new ArrayList<>();
+        if (filter.getCreatedFrom() != null) {
+            conditions.add("created_at >= ?");
+            params.add(Timestamp.from(filter.getCreatedFrom().toInstant()));
+        }
+        if (filter.getCreatedTo() != null) {
+            conditions.add("created_at < ?");
+            params.add(Timestamp.from(filter.getCreatedTo().toInstant()));
+        }
+        if (filter.getGreenCertificateType() != null) {
+            conditions.add("green_certificate_type = ?");
+            params.add(filter.getGreenCertificateType().name());
+        }
+        if (filter.getClaimed() != null) {
+            conditions.add("claimed = ?");
+            params.add(filter.getClaimed());
+        }
+        if (filter.getRevoked() != null) {
+            conditions.add("revoked = ?");
+            params.add(filter.getRevoked());
+        }
+        if (filter.getLocked() != null) {
+            conditions.add("locked = ?");
+            params.add(filter.getLocked());
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+    }
+
+    private static String timestamp(ResultSet rs, int column) throws SQLException {
+        Timestamp timestamp = rs.getTimestamp(column);
+        return timestamp == null ? null : timestamp.toInstant().toString();
+    }
+
+    private interface RowWriter {
+        void start() throws IOException;
+
+        void write(ResultSet rs) throws SQLException, IOException;
+
+        void finish() throws IOException;
+    }
+
+    private static final class NdjsonRowWriter implements RowWriter {
+        private final JsonGenerator generator;
+
+        NdjsonRowWriter(JsonFactory jsonFactory, OutputStream out) throws IOException {
+            generator = jsonFactory.createGenerator(out);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void start() {
+            // NDJSON has no header
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            generator.writeStartObject();
+            generator.writeNumberField(COLUMNS[0], rs.getLong(1));
+            generator.writeStringField(COLUMNS[1], rs.getString(2));
+            generator.writeStringField(COLUMNS[2], rs.getString(3));
+            generator.writeStringField(COLUMNS[3], timestamp(rs, 4));
+            generator.writeStringField(COLUMNS[4], timestamp(rs, 5));
+            generator.writeStringField(COLUMNS[5], rs.getString(6));
+            generator.writeStringField(COLUMNS[6], rs.getString(7));
+            generator.writeBooleanField(COLUMNS[7], rs.getBoolean(8));
+            generator.writeBooleanField(COLUMNS[8], rs.getBoolean(9));
+            generator.writeBooleanField(COLUMNS[9], rs.getBoolean(10));
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.close();
+        }
+    }
+
+    private static final class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+
+        CsvRowWriter(OutputStream out) {
+            writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void start() throws IOException {
+            writer.write(String.join(",", COLUMNS));
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            writer.write(Long.toString(rs.getLong(1)));
+            writeField(rs.getString(2));
+            writeField(rs.getString(3));
+            writeField(timestamp(rs, 4));
+            writeField(timestamp(rs, 5));
+            writeField(rs.getString(6));
+            writeField(rs.getString(7));
+            writeField(Boolean.toString(rs.getBoolean(8)));
+            writeField(Boolean.toString(rs.getBoolean(9)));
+            writeField(Boolean.toString(rs.getBoolean(10)));
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+
+        /**
+         * Write a separator and the value, quoted as in RFC 4180 if needed. Null is an empty field.
+         */
+        private void writeField(String value) throws IOException {
+            writer.write(',');
+            if (value == null) {
+                return;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0
+                && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                writer.write(value);
+            } else {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            }
+        }
+    }
+}
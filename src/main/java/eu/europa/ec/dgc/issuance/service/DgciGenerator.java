@@ -22,27 +22,60 @@ package eu.europa.ec.dgc.issuance.service;
 
 import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
 import eu.europa.ec.dgc.issuance.utils.DgciUtil;
-import java.util.UUID;
-import javax.annotation.PostConstruct;
-import lombok.RequiredArgsConstructor;
+import java.security.SecureRandom;
+import java.util.Arrays;
 import org.springframework.stereotype.Component;
 
+/**
+ * Generator of DGCI: prefix, ':', radix 35 encoded random UUID and a Luhn mod N check character.
+ * The generator keeps one char buffer with the prefix and one SecureRandom per thread, converts the UUID
+ * without BigInteger and adds the checksum of the constant prefix, precomputed at construction, so only
+ * the resulting String is allocated per DGCI.
+ */
 @Component
-@RequiredArgsConstructor
 public class DgciGenerator {
+    private static final String CODE_POINTS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789/:";
+    private static final int N = CODE_POINTS.length();
+    private static final int[] CODE_POINT_TABLE = new int[128];
+
+    static {
+        Arrays.fill(CODE_POINT_TABLE, -1);
+        for (int i = 0; i < N; i++) {
+            CODE_POINT_TABLE[CODE_POINTS.charAt(i)] = i;
+        }
+    }
+
     private final IssuanceConfigProperties issuanceConfigProperties;
+    private final char[] prefix;
+    /**
+     * Checksum sums of the prefix, index 0 if the factor of its last character is 2, index 1 if it is 1.
+     */
+    private final int[] prefixSums = new int[2];
+    private final ThreadLocal<GeneratorState> state;
 
-    private static final String CODE_POINTS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789/:";
+    /**
+     * Constructor, checks the configured DGCI prefix and precomputes its checksum part.
+     *
+     * @param issuanceConfigProperties config with the DGCI prefix
+     */
+    public DgciGenerator(IssuanceConfigProperties issuanceConfigProperties) {
+        this.issuanceConfigProperties = issuanceConfigProperties;
+        checkPrefix();
+        String dgciPrefix = issuanceConfigProperties.getDgciPrefix();
+        prefix = ((dgciPrefix == null ? "" : dgciPrefix) + ':').toCharArray();
+        prefixSums[0] = checksumSum(prefix, 0, prefix.length, 2);
+        prefixSums[1] = checksumSum(prefix, 0, prefix.length, 1);
+        state = ThreadLocal.withInitial(() -> new GeneratorState(prefix));
+    }
 
     /**
      * Check if dgci prefix contains character suitable for checksum calculation.
      */
-    @PostConstruct
     public void checkPrefix() {
         String dgciPrefix = issuanceConfigProperties.getDgciPrefix();
         if (dgciPrefix != null) {
             for (int i = 0;i < dgciPrefix.length();i++) {
-                if (CODE_POINTS.indexOf(dgciPrefix.charAt(i)) < 0) {
+                if (codePointOrInvalid(dgciPrefix.charAt(i)) < 0) {
                     throw new IllegalArgumentException("configured DGCI prefix '"
                         + dgciPrefix + "' contains invalid character '"
                         + dgciPrefix.charAt(i) + "' only following are supported " + CODE_POINTS);
@@ -57,50 +90,61 @@ public class DgciGenerator {
      * @return DGCI as String
      */
     public String newDgci() {
-        StringBuilder sb = new StringBuilder();
-        sb.append(issuanceConfigProperties.getDgciPrefix()).append(':');
-        sb.append(DgciUtil.encodeDgci(UUID.randomUUID()));
-        sb.append(generateCheckCharacter(sb.toString()));
-        return sb.toString();
+        GeneratorState generatorState = state.get();
+        // random version 4 UUID, as UUID.randomUUID() sets version and variant bits
+        long msb = (generatorState.random.nextLong() & ~0xF000L) | 0x4000L;
+        long lsb = (generatorState.random.nextLong() & 0x3FFF_FFFF_FFFF_FFFFL) | 0x8000_0000_0000_0000L;
+        char[] chars = generatorState.chars;
+        int encodedEnd = prefix.length + DgciUtil.MAX_ENCODED_LENGTH;
+        int encodedStart = DgciUtil.encodeDgci(msb, lsb, chars, encodedEnd);
+        int encodedLength = encodedEnd - encodedStart;
+        if (encodedStart != prefix.length) {
+            System.arraycopy(chars, encodedStart, chars, prefix.length, encodedLength);
+        }
+        int end = prefix.length + encodedLength;
+        int sum = checksumSum(chars, prefix.length, end, 2) + prefixSums[encodedLength % 2];
+        chars[end] = CODE_POINTS.charAt((N - sum % N) % N);
+        return new String(chars, 0, end + 1);
     }
 
     // see https://en.wikipedia.org/wiki/Luhn_mod_N_algorithm
-    private char generateCheckCharacter(String input) {
-        int factor = 2;
+    // Sum of the addends of the characters, starting from the right with the given factor.
+    private static int checksumSum(char[] input, int start, int end, int rightmostFactor) {
+        int factor = rightmostFactor;
         int sum = 0;
-        int n = CODE_POINTS.length();
-
-        // Starting from the right and working leftwards is easier since
-        // the initial "factor" will always be "2".
-        for (int i = input.length() - 1; i >= 0; i--) {
-            int codePoint = codePointFromCharacter(input.charAt(i));
-            int addend = factor * codePoint;
+        for (int i = end - 1; i >= start; i--) {
+            int addend = factor * codePointFromCharacter(input[i]);
 
             // Alternate the "factor" that each "codePoint" is multiplied by
             factor = (factor == 2) ? 1 : 2;
 
             // Sum the digits of the "addend" as expressed in base "n"
-            addend = (addend / n) + (addend % n);
-            sum += addend;
+            sum += (addend / N) + (addend % N);
         }
-
-        // Calculate the number that must be added to the "sum"
-        // to make it divisible by "n".
-        int remainder = sum % n;
-        int checkCodePoint = (n - remainder) % n;
-
-        return characterFromCodePoint(checkCodePoint);
-    }
-
-    private char characterFromCodePoint(int checkCodePoint) {
-        return CODE_POINTS.charAt(checkCodePoint);
+        return sum;
     }
 
-    private int codePointFromCharacter(char charAt) {
-        int codePoint = CODE_POINTS.indexOf(charAt);
+    private static int codePointFromCharacter(char charAt) {
+        int codePoint = codePointOrInvalid(charAt);
         if (codePoint < 0) {
             throw new IllegalArgumentException("unsupported character for checksum: " + charAt);
         }
         return codePoint;
     }
+
+    private static int codePointOrInvalid(char charAt) {
+        return charAt < CODE_POINT_TABLE.length ? CODE_POINT_TABLE[charAt] : -1;
+    }
+
+    private static final class GeneratorState {
+        private final SecureRandom random = new SecureRandom();
+        /**
+         * Prefix followed by space for the encoded UUID and the check character.
+         */
+        private final char[] chars;
+
+        GeneratorState(char[] prefix) {
+            chars = Arrays.copyOf(prefix, prefix.length + DgciUtil.MAX_ENCODED_LENGTH + 1);
+        }
+    }
 }
@@ -0,0 +1,239 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.issuance.service;
+
+import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
+import eu.europa.ec.dgc.issuance.repository.DgciRepository;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bloom filter over all dgci hashes of the database.
+ * A negative answer of {@link #mightContain(String)} is definite, so unknown hashes (e.g. of certificates
+ * of other issuers) can be answered without database access. The filter is built after startup by paging
+ * through the dgci table in the background, updated locally on every issuing and synced periodically with dgci
+ * created by other instances. Until the first build is finished every hash might be contained, so all lookups
+ * go to the database.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DgciHashFilter {
+    /**
+     * Overlap of the sync windows, covers transactions in flight and clock differences between instances.
+     */
+    private static final Duration SYNC_OVERLAP = Duration.ofMinutes(5);
+
+    private final DgciRepository dgciRepository;
+    private final IssuanceConfigProperties issuanceConfigProperties;
+    private final TaskScheduler taskScheduler;
+
+    private volatile BloomFilter filter;
+    private volatile BloomFilter building;
+    private volatile ZonedDateTime lastSync;
+
+    /**
+     * Build the filter and schedule sync and rebuild.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        IssuanceConfigProperties.HashFilter config = issuanceConfigProperties.getHashFilter();
+        if (!config.isEnabled()) {
+            log.info("dgci hash filter disabled");
+            return;
+        }
+        // the startup is not blocked by reading the complete table
+        taskScheduler.schedule(this::rebuild, Instant.now());
+        taskScheduler.scheduleWithFixedDelay(this::sync, Instant.now().plus(config.getSyncInterval()),
+            config.getSyncInterval());
+        taskScheduler.scheduleWithFixedDelay(this::rebuild, Instant.now().plus(config.getRebuildInterval()),
+            config.getRebuildInterval());
+    }
+
+    /**
+     * Check if the dgci hash might be issued by this service.
+     *
+     * @param dgciHash base64 encoded dgci hash
+     * @return false if the dgci hash is definitely not in database
+     */
+    public boolean mightContain(String dgciHash) {
+        BloomFilter current = filter;
+        if (current == null) {
+            return true;
+        }
+        byte[] hash = decode(dgciHash);
+        return hash == null || current.mightContain(hash);
+    }
+
+    /**
+     * Add the hash of a newly issued dgci.
+     * Has to be called after the dgci is committed.
+     *
+     * @param dgciHash base64 encoded dgci hash
+     */
+    public void add(String dgciHash) {
+        byte[] hash = decode(dgciHash);
+        if (hash == null) {
+            return;
+        }
+        // building is read first, a rebuild publishes building before it starts reading the table
+        BloomFilter next = building;
+        BloomFilter current = filter;
+        if (next != null) {
+            next.put(hash);
+        }
+        if (current != null) {
+            current.put(hash);
+        }
+    }
+
+    /**
+     * Build a new filter from the complete table and replace the current filter.
+     */
+    public synchronized void rebuild() {
+        IssuanceConfigProperties.HashFilter config = issuanceConfigProperties.getHashFilter();
+        long startTime = System.currentTimeMillis();
+        ZonedDateTime syncStart = ZonedDateTime.now();
+        BloomFilter next = new BloomFilter(config.getExpectedInsertions(), config.getFalsePositiveRate());
+        building = next;
+        try {
+            long count = 0;
+            long afterId = 0;
+            PageRequest page = PageRequest.of(0, config.getPageSize());
+            List<DgciRepository.DgciHashView> hashes;
+            do {
+                hashes = dgciRepository.findDgciHashesAfter(afterId, page);
+                for (DgciRepository.DgciHashView view : hashes) {
+                    byte[] hash = decode(view.getDgciHash());
+                    if (hash != null) {
+                        next.put(hash);
+                    }
+                    afterId = view.getId();
+                }
+                count += hashes.size();
+            } while (hashes.size() == config.getPageSize());
+            filter = next;
+            lastSync = syncStart;
+            log.info("dgci hash filter built with {} entries in {} ms", count, System.currentTimeMillis() - startTime);
+            if (count > config.getExpectedInsertions()) {
+                log.warn("dgci hash filter holds more than expected {} entries, false positive rate increases",
+                    config.getExpectedInsertions());
+            }
+        } catch (RuntimeException e) {
+            log.error("can not build dgci hash filter", e);
+        } finally {
+            building = null;
+        }
+    }
+
+    /**
+     * Add dgci created since the last sync, also by other instances.
+     */
+    public synchronized void sync() {
+        BloomFilter current = filter;
+        if (current == null) {
+            return;
+        }
+        ZonedDateTime syncStart = ZonedDateTime.now();
+        try {
+            for (String dgciHash : dgciRepository.findDgciHashesCreatedSince(lastSync.minus(SYNC_OVERLAP))) {
+                byte[] hash = decode(dgciHash);
+                if (hash != null) {
+                    current.put(hash);
+                }
+            }
+            lastSync = syncStart;
+        } catch (RuntimeException e) {
+            log.warn("can not sync dgci hash filter: {}", e.getMessage());
+        }
+    }
+
+    private static byte[] decode(String dgciHash) {
+        if (dgciHash == null) {
+            return null;
+        }
+        try {
+            byte[] hash = Base64.getDecoder().decode(dgciHash);
+            return hash.length >= 2 * Long.BYTES ? hash : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Bloom filter on SHA-256 values. The values are already uniformly distributed, so the bit indexes
+     * are derived from two longs of the value by double hashing without computing further hashes.
+     */
+    static final class BloomFilter {
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        private final int hashCount;
+
+        BloomFilter(long expectedInsertions, double falsePositiveRate) {
+            long n = Math.max(1, expectedInsertions);
+            long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            int words = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (m + 63) / 64));
+            bits = new AtomicLongArray(words);
+            bitCount = (long) words * 64;
+            hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        }
+
+        void put(byte[] hash) {
+            ByteBuffer buffer = ByteBuffer.wrap(hash);
+            long h1 = buffer.getLong();
+            long h2 = buffer.getLong();
+            for (int i = 0; i < hashCount; i++) {
+                long index = Math.floorMod(h1 + i * h2, bitCount);
+                int word = (int) (index >>> 6);
+                long mask = 1L << index;
+                long value = bits.get(word);
+                while ((value & mask) == 0 && !bits.compareAndSet(word, value, value | mask)) {
+                    value = bits.get(word);
+                }
+            }
+        }
+
+        boolean mightContain(byte[] hash) {
+            ByteBuffer buffer = ByteBuffer.wrap(hash);
+            long h1 = buffer.getLong();
+            long h2 = buffer.getLong();
+            for (int i = 0; i < hashCount; i++) {
+                long index = Math.floorMod(h1 + i * h2, bitCount);
+                if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.issuance.service;
+
+import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
+import eu.europa.ec.dgc.issuance.repository.DgciRepository;
+import eu.europa.ec.dgc.issuance.utils.HashUtil;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Online migration of the dgci hash to the binary dgci_hash_bin column.
+ * New rows get both columns on insert. Rows written by older versions are filled after startup in a
+ * background thread by keyset pagination on id, one JDBC batch per chunk with a pause between chunks,
+ * so the table stays available. Several instances may run it at the same time, the updates are idempotent.
+ * Until a run has completed, lookups fall back to the varchar dgci_hash column. When no row is left the
+ * column can be dropped by a later release.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DgciHashMigrationService {
+    private static final String UPDATE_SQL = "UPDATE dgci SET dgci_hash_bin = ? WHERE id = ? AND dgci_hash_bin IS NULL";
+
+    private final DgciRepository dgciRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final IssuanceConfigProperties issuanceConfigProperties;
+    private Thread migrationThread;
+    private volatile boolean completed;
+
+    /**
+     * Start the migration thread.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!issuanceConfigProperties.getHashMigration().isEnabled()) {
+            return;
+        }
+        migrationThread = new Thread(this::runMigration, "dgci-hash-migration");
+        migrationThread.setDaemon(true);
+        migrationThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (migrationThread != null) {
+            migrationThread.interrupt();
+        }
+    }
+
+    private void runMigration() {
+        try {
+            migrate();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.info("dgci hash migration interrupted, it continues after the next start");
+        } catch (RuntimeException e) {
+            log.error("dgci hash migration failed, it is retried after the next start", e);
+        }
+    }
+
+    /**
+     * Whether a migration run has gone through all rows on this instance.
+     * Rows with a dgci hash that is not a Base64 SHA-256 hash are skipped, they can not be found by hash anyway.
+     *
+     * @return true if every dgci can be found by dgci_hash_bin
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * Fill dgci_hash_bin of all rows without it.
+     *
+     * @return number of migrated rows
+     * @throws InterruptedException if interrupted during the pause between chunks
+     */
+    public long migrate() throws InterruptedException {
+        IssuanceConfigProperties.HashMigration config = issuanceConfigProperties.getHashMigration();
+        PageRequest page = PageRequest.of(0, config.getChunkSize());
+        long afterId = 0;
+        long migrated = 0;
+        List<DgciRepository.DgciHashView> rows;
+        do {
+            rows = dgciRepository.findWithoutBinaryHashAfter(afterId, page);
+            List<Object[]> updates = new ArrayList<>(rows.size());
+            for (DgciRepository.DgciHashView row : rows) {
+                byte[] dgciHashBin = HashUtil.decodeSha256Base64(row.getDgciHash());
+                if (dgciHashBin != null) {
+                    updates.add(new Object[] {dgciHashBin, row.getId()});
+                } else {
+                    log.warn("dgci with id {} has no valid dgci hash, not migrated", row.getId());
+                }
+                afterId = row.getId();
+            }
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+                migrated += updates.size();
+                Thread.sleep(config.getPauseBetweenChunks().toMillis());
+            }
+        } while (rows.size() == config.getChunkSize());
+        completed = true;
+        log.info("dgci hash migration finished, {} rows migrated", migrated);
+        return migrated;
+    }
+}
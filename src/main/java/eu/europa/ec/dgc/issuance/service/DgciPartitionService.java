@@ -0,0 +1,184 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.issuance.service;
+
+import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Maintenance of the optional monthly partitioning of the dgci table on PostgreSQL.
+ * The partitioning is created by the liquibase context "partitioned" and detected at startup, without it this
+ * service does nothing. Inserts and updates are routed by PostgreSQL, so the repository is unchanged; only
+ * the lookup by dgci hash goes through the dgci_lookup table to search a single partition.
+ * The maintenance creates the partitions of the next months in advance and drops partitions of which all dgci
+ * are expired, instead of deleting the rows one by one.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DgciPartitionService {
+    private static final String PARTITION_PREFIX = "dgci_p";
+    private static final Pattern PARTITION_NAME = Pattern.compile(PARTITION_PREFIX + "\\d{6}");
+    private static final DateTimeFormatter PARTITION_MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final String ARCHIVE_SQL = "INSERT INTO dgci_archive (id, dgci, dgci_hash, created_at, expires_at,"
+        + " cert_hash, green_certificate_type, public_key, revoked, claimed, locked, kid, archived_at)"
+        + " SELECT id, dgci, dgci_hash, created_at, expires_at, cert_hash, green_certificate_type, public_key,"
+        + " revoked, claimed, locked, kid, CURRENT_TIMESTAMP FROM %s WHERE claimed = true";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final IssuanceConfigProperties issuanceConfigProperties;
+
+    private volatile boolean partitioned;
+
+    /**
+     * Detect the partitioning and run the maintenance once.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        partitioned = detectPartitioning();
+        if (partitioned) {
+            log.info("dgci table is partitioned by month");
+            maintain();
+        }
+    }
+
+    /**
+     * Maintenance triggered by issuance.partitioning.cron.
+     */
+    @Scheduled(cron = "${issuance.partitioning.cron:0 30 2 * * *}")
+    public void scheduledMaintain() {
+        if (partitioned) {
+            maintain();
+        }
+    }
+
+    public boolean isPartitioned() {
+        return partitioned;
+    }
+
+    /**
+     * Create upcoming partitions and drop expired partitions.
+     */
+    public synchronized void maintain() {
+        try {
+            createPartitions();
+            if (issuanceConfigProperties.getPartitioning().isDropExpired()) {
+                dropExpiredPartitions();
+            }
+        } catch (DataAccessException e) {
+            log.error("dgci partition maintenance failed", e);
+        }
+    }
+
+    private boolean detectPartitioning() {
+        try {
+            String product = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            if (!"PostgreSQL".equals(product)) {
+                return false;
+            }
+            Integer count = jdbcTemplate.queryForObject("SELECT count(*) FROM pg_partitioned_table p"
+                + " JOIN pg_class c ON c.oid = p.partrelid WHERE c.relname = 'dgci' AND pg_table_is_visible(c.oid)",
+                Integer.class);
+            return count != null && count > 0;
+        } catch (DataAccessException e) {
+            log.warn("can not detect partitioning of dgci table: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void createPartitions() {
+        YearMonth month = YearMonth.now();
+        for (int i = 0; i <= issuanceConfigProperties.getPartitioning().getMonthsAhead(); i++) {
+            YearMonth partitionMonth = month.plusMonths(i);
+            String name = PARTITION_PREFIX + partitionMonth.format(PARTITION_MONTH);
+            try {
+                jdbcTemplate.execute(String.format(
+                    "CREATE TABLE IF NOT EXISTS %s PARTITION OF dgci FOR VALUES FROM ('%s') TO ('%s')",
+                    name, partitionMonth.atDay(1), partitionMonth.plusMonths(1).atDay(1)));
+            } catch (DataAccessException e) {
+                // e.g. the default partition already holds rows of this month
+                log.error("can not create dgci partition {}: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    private void dropExpiredPartitions() {
+        IssuanceConfigProperties.Purge purge = issuanceConfigProperties.getPurge();
+        Timestamp expiredBefore = Timestamp.from(ZonedDateTime.now().minus(purge.getGracePeriod()).toInstant());
+        List<String> partitions = jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i"
+            + " JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = 'dgci'::regclass", String.class);
+        YearMonth currentMonth = YearMonth.now();
+        for (String partition : partitions) {
+            if (!PARTITION_NAME.matcher(partition).matches()) {
+                continue;
+            }
+            YearMonth month = YearMonth.parse(partition.substring(PARTITION_PREFIX.length()), PARTITION_MONTH);
+            if (!month.isBefore(currentMonth)) {
+                continue;
+            }
+            Map<String, Object> counts = jdbcTemplate.queryForMap("SELECT"
+                + " count(*) FILTER (WHERE expires_at IS NULL OR expires_at >= ?) AS valid,"
+                + " count(*) FILTER (WHERE claimed = true) AS claimed FROM " + partition, expiredBefore);
+            long valid = ((Number) counts.get("valid")).longValue();
+            long claimed = ((Number) counts.get("claimed")).longValue();
+            if (valid > 0
+                || (claimed > 0 && purge.getClaimedExpired() == IssuanceConfigProperties.ClaimedExpiredAction.KEEP)) {
+                continue;
+            }
+            boolean archive = claimed > 0
+                && purge.getClaimedExpired() == IssuanceConfigProperties.ClaimedExpiredAction.ARCHIVE;
+            dropPartition(partition, month, archive);
+        }
+    }
+
+    private void dropPartition(String partition, YearMonth month, boolean archive) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (archive) {
+                jdbcTemplate.update(String.format(ARCHIVE_SQL, partition));
+            }
+            jdbcTemplate.update("DELETE FROM dgci_lookup WHERE created_at >= ? AND created_at < ?",
+                Timestamp.valueOf(month.atDay(1).atStartOfDay()),
+                Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay()));
+            jdbcTemplate.execute("ALTER TABLE dgci DETACH PARTITION " + partition);
+            jdbcTemplate.execute("DROP TABLE " + partition);
+        });
+        log.info("dropped expired dgci partition {} (archived: {})", partition, archive);
+    }
+}
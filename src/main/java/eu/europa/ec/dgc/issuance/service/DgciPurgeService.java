@@ -0,0 +1,138 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.issuance.service;
+
+import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
+import eu.europa.ec.dgc.issuance.repository.DgciRepository;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Scheduled removal of dgci that are no longer needed.
+ * <ul>
+ *   <li>expired and never claimed dgci are deleted</li>
+ *   <li>reservations without signed certificate are deleted after the TAN expiration</li>
+ *   <li>expired claimed dgci are kept, archived to dgci_archive or deleted, see issuance.purge.claimedExpired</li>
+ * </ul>
+ * Rows are selected by keyset pagination on id and removed in chunks of issuance.purge.chunkSize, each chunk
+ * in its own short transaction followed by a pause, so the job does not hold locks or block other traffic.
+ * The scheduled run holds a cluster lock, two instances would pick the same chunks and the second archive insert
+ * would fail on the primary key of dgci_archive.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DgciPurgeService {
+    private final DgciRepository dgciRepository;
+    private final IssuanceConfigProperties issuanceConfigProperties;
+    private final DidCacheService didCacheService;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Purge triggered by issuance.purge.cron if enabled, on one instance of the cluster at a time.
+     */
+    @Scheduled(cron = "${issuance.purge.cron:0 0 3 * * *}")
+    @SchedulerLock(name = "dgci_purge", lockAtMostFor = "${issuance.purge.lockAtMostFor:PT6H}")
+    public void scheduledPurge() {
+        if (issuanceConfigProperties.getPurge().isEnabled()) {
+            purge();
+        }
+    }
+
+    /**
+     * Run all purge categories once.
+     *
+     * @return number of removed rows
+     */
+    public long purge() {
+        IssuanceConfigProperties.Purge config = issuanceConfigProperties.getPurge();
+        ZonedDateTime expiredBefore = ZonedDateTime.now().minus(config.getGracePeriod());
+        ZonedDateTime createdBefore = ZonedDateTime.now().minus(issuanceConfigProperties.getTanExpirationHours());
+        long removed = 0;
+        try {
+            removed += removeChunked("expired unclaimed",
+                (afterId, page) -> dgciRepository.findExpiredUnclaimed(afterId, expiredBefore, page), false);
+            removed += removeChunked("unsigned reservations",
+                (afterId, page) -> dgciRepository.findUnsignedReservations(afterId, createdBefore, page), false);
+            if (config.getClaimedExpired() != IssuanceConfigProperties.ClaimedExpiredAction.KEEP) {
+                removed += removeChunked("expired claimed",
+                    (afterId, page) -> dgciRepository.findExpiredClaimed(afterId, expiredBefore, page),
+                    config.getClaimedExpired() == IssuanceConfigProperties.ClaimedExpiredAction.ARCHIVE);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("dgci purge interrupted");
+        }
+        return removed;
+    }
+
+    private long removeChunked(String category, ChunkQuery chunkQuery, boolean archive) throws InterruptedException {
+        IssuanceConfigProperties.Purge config = issuanceConfigProperties.getPurge();
+        Pageable page = PageRequest.of(0, config.getChunkSize());
+        long afterId = 0;
+        long removed = 0;
+        for (int chunk = 0; chunk < config.getMaxChunksPerRun(); chunk++) {
+            List<DgciRepository.DgciHashView> rows = chunkQuery.find(afterId, page);
+            if (rows.isEmpty()) {
+                break;
+            }
+            List<Long> ids = new ArrayList<>(rows.size());
+            for (DgciRepository.DgciHashView row : rows) {
+                ids.add(row.getId());
+            }
+            removed += removeChunk(ids, archive);
+            rows.forEach(row -> didCacheService.invalidate(row.getDgciHash()));
+            afterId = ids.get(ids.size() - 1);
+            if (rows.size() < config.getChunkSize()) {
+                break;
+            }
+            Thread.sleep(config.getPauseBetweenChunks().toMillis());
+        }
+        if (removed > 0) {
+            log.info("dgci purge removed {} {} (archived: {})", removed, category, archive);
+        }
+        return removed;
+    }
+
+    private int removeChunk(List<Long> ids, boolean archive) {
+        Integer removed = transactionTemplate.execute(status -> {
+            if (archive) {
+                dgciRepository.archiveByIds(ids);
+            }
+            return dgciRepository.deleteByIds(ids);
+        });
+        return removed == null ? 0 : removed;
+    }
+
+    @FunctionalInterface
+    private interface ChunkQuery {
+        List<DgciRepository.DgciHashView> find(long afterId, Pageable page);
+    }
+}
@@ -0,0 +1,186 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.issuance.service;
+
+import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
+import eu.europa.ec.dgc.issuance.repository.DgciRepository;
+import eu.europa.ec.dgc.issuance.utils.HashUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Revocation and locking of issued dgci.
+ * Dgci are addressed by their hash. The hashes are applied in chunks of issuance.revocation.chunkSize, each chunk
+ * is one UPDATE ... WHERE dgci_hash IN (...) in its own transaction, so a bulk of hundreds of thousands of hashes
+ * is a few hundred short statements. The DID cache entries of a chunk are invalidated after its commit.
+ * A failing chunk stops the operation, the chunks before stay applied and the operation can be repeated.
+ * Revocations are added to the revocation list by an incremental sync when the operation is finished.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DgciRevocationService {
+    private static final int SHA256_LENGTH = 32;
+
+    private final DgciRepository dgciRepository;
+    private final DidCacheService didCacheService;
+    private final IssuanceConfigProperties issuanceConfigProperties;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ObjectProvider<RevocationListService> revocationListService;
+
+    public enum Action {
+        REVOKE, LOCK, UNLOCK
+    }
+
+    /**
+     * Apply the action to dgci and dgci hashes.
+     *
+     * @param action action
+     * @param dgcis dgci, may be null
+     * @param dgciHashes Base64 or Base64URL encoded SHA-256 hashes of dgci, may be null
+     * @return result
+     */
+    public Result apply(Action action, List<String> dgcis, List<String> dgciHashes) {
+        List<String> hashes = new ArrayList<>();
+        if (dgcis != null) {
+            dgcis.forEach(dgci -> hashes.add(HashUtil.sha256Base64(dgci)));
+        }
+        if (dgciHashes != null) {
+            hashes.addAll(dgciHashes);
+        }
+        return apply(action, hashes.iterator());
+    }
+
+    /**
+     * Apply the action to a stream of dgci hashes, one per line.
+     * Blank lines are ignored, lines that are no valid hash are counted as invalid.
+     *
+     * @param action action
+     * @param dgciHashes Base64 or Base64URL encoded SHA-256 hashes of dgci, one per line
+     * @return result
+     * @throws IOException if the input can not be read
+     */
+    public Result apply(Action action, InputStream dgciHashes) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(dgciHashes, StandardCharsets.UTF_8))) {
+            Iterator<String> lines = reader.lines().filter(line -> !line.isBlank()).map(String::trim).iterator();
+            return apply(action, lines);
+        }
+    }
+
+    private Result apply(Action action, Iterator<String> dgciHashes) {
+        int chunkSize = issuanceConfigProperties.getRevocation().getChunkSize();
+        Result result = new Result(action);
+        List<String> chunk = new ArrayList<>(chunkSize);
+        while (dgciHashes.hasNext()) {
+            String dgciHash = normalizeHash(dgciHashes.next());
+            if (dgciHash == null) {
+                result.invalid++;
+                continue;
+            }
+            chunk.add(dgciHash);
+            if (chunk.size() == chunkSize) {
+                applyChunk(action, chunk, result);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            applyChunk(action, chunk, result);
+        }
+        if (action == Action.REVOKE && result.updated > 0) {
+            revocationListService.ifAvailable(RevocationListService::sync);
+        }
+        meterRegistry.counter("issuance.revocation.updated", "action", action.name()).increment(result.updated);
+        log.info("dgci {}: {} hashes, {} updated, {} invalid",
+            action, result.requested, result.updated, result.invalid);
+        return result;
+    }
+
+    private void applyChunk(Action action, List<String> chunk, Result result) {
+        ZonedDateTime revokedAt = ZonedDateTime.now();
+        Integer updated = transactionTemplate.execute(status -> {
+            switch (action) {
+                case REVOKE:
+                    return dgciRepository.revokeByDgciHashes(chunk, revokedAt);
+                case LOCK:
+                    return dgciRepository.lockByDgciHashes(chunk, true);
+                case UNLOCK:
+                    return dgciRepository.lockByDgciHashes(chunk, false);
+                default:
+                    throw new IllegalArgumentException("unknown action " + action);
+            }
+        });
+        chunk.forEach(didCacheService::invalidate);
+        result.requested += chunk.size();
+        result.updated += updated == null ? 0 : updated;
+    }
+
+    /**
+     * Convert a Base64 or Base64URL encoded hash to the Base64 form stored in the database.
+     *
+     * @return hash or null if it is not a Base64 encoded SHA-256 hash
+     */
+    private static String normalizeHash(String dgciHash) {
+        try {
+            byte[] hash = Base64.getDecoder().decode(dgciHash.replace('-', '+').replace('_', '/'));
+            return hash.length == SHA256_LENGTH ? Base64.getEncoder().encodeToString(hash) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Counts of an operation.
+     */
+    @Getter
+    public static class Result {
+        private final Action action;
+        /**
+         * Valid hashes, including unknown and already updated dgci.
+         */
+        private long requested;
+        /**
+         * Dgci that changed.
+         */
+        private long updated;
+        private long invalid;
+
+        Result(Action action) {
+            this.action = action;
+        }
+    }
+}
@@ -23,23 +23,9 @@ package eu.europa.ec.dgc.issuance.service;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.nimbusds.jose.jwk.Curve;
-import com.nimbusds.jose.jwk.ECKey;
-import com.nimbusds.jose.jwk.RSAKey;
 import com.nimbusds.jose.util.Base64URL;
 import com.upokecenter.cbor.CBORObject;
 import com.upokecenter.cbor.CBORType;
-import ehn.techiop.hcert.kotlin.chain.Base45Service;
-import ehn.techiop.hcert.kotlin.chain.CborService;
-import ehn.techiop.hcert.kotlin.chain.Chain;
-import ehn.techiop.hcert.kotlin.chain.ChainResult;
-import ehn.techiop.hcert.kotlin.chain.CompressorService;
-import ehn.techiop.hcert.kotlin.chain.ContextIdentifierService;
-import ehn.techiop.hcert.kotlin.chain.CoseService;
-import ehn.techiop.hcert.kotlin.chain.CwtService;
-import ehn.techiop.hcert.kotlin.chain.HigherOrderValidationService;
-import ehn.techiop.hcert.kotlin.chain.SchemaValidationService;
 import ehn.techiop.hcert.kotlin.data.GreenCertificate;
 import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
 import eu.europa.ec.dgc.issuance.entity.DgciEntity;
@@ -47,6 +33,9 @@ import eu.europa.ec.dgc.issuance.entity.GreenCertificateType;
 import eu.europa.ec.dgc.issuance.repository.DgciRepository;
 import eu.europa.ec.dgc.issuance.restapi.dto.ClaimRequest;
 import eu.europa.ec.dgc.issuance.restapi.dto.ClaimResponse;
+import eu.europa.ec.dgc.issuance.restapi.dto.DgciBatchInit;
+import eu.europa.ec.dgc.issuance.restapi.dto.DgciBatchIssueItem;
+import eu.europa.ec.dgc.issuance.restapi.dto.DgciBatchIssueResult;
 import eu.europa.ec.dgc.issuance.restapi.dto.DgciIdentifier;
 import eu.europa.ec.dgc.issuance.restapi.dto.DgciInit;
 import eu.europa.ec.dgc.issuance.restapi.dto.DidAuthentication;
@@ -55,59 +44,63 @@ import eu.europa.ec.dgc.issuance.restapi.dto.EgdcCodeData;
 import eu.europa.ec.dgc.issuance.restapi.dto.IssueData;
 import eu.europa.ec.dgc.issuance.restapi.dto.SignatureData;
 import eu.europa.ec.dgc.issuance.utils.HashUtil;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
-import java.security.KeyFactory;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.security.PublicKey;
-import java.security.Signature;
-import java.security.SignatureException;
-import java.security.interfaces.ECPublicKey;
-import java.security.interfaces.RSAPublicKey;
-import java.security.spec.InvalidKeySpecException;
-import java.security.spec.X509EncodedKeySpec;
 import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import kotlinx.serialization.SerializationException;
 import kotlinx.serialization.json.Json;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import lombok.val;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class DgciService {
     private static final String ID_SEP = "_";
+    private static final String OPERATION_TIMER = "issuance.dgci.operation";
+    private static final String CLAIM_REJECTED_COUNTER = "issuance.claim.rejected";
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final int MAX_HASH_LENGTH = 512;
 
     public enum DgciStatus {
-        EXISTS, NOT_EXISTS, LOCKED
+        EXISTS, NOT_EXISTS, LOCKED, REVOKED
     }
 
     private final DgciRepository dgciRepository;
     private final CertificateService certificateService;
     private final IssuanceConfigProperties issuanceConfigProperties;
     private final DgciGenerator dgciGenerator;
-    private final HigherOrderValidationService higherOrderValidationService;
-    private final CborService cborService;
-    private final CoseService coseService;
-    private final CwtService cwtService;
-    private final ContextIdentifierService contextIdentifierService;
-    private final CompressorService compressorService;
-    private final Base45Service base45Service;
-    private final SchemaValidationService schemaValidationService;
+    private final EdgcIssuingChain edgcIssuingChain;
     private final ExpirationService expirationService;
-
-    private static final int MAX_CLAIM_RETRY_TAN = 3;
+    private final DidCacheService didCacheService;
+    private final DgciHashFilter dgciHashFilter;
+    private final ClaimRetryCounter claimRetryCounter;
+    private final TanService tanService;
+    private final WalletKeyService walletKeyService;
+    private final DgciPartitionService dgciPartitionService;
+    private final DgciHashMigrationService dgciHashMigrationService;
+    private final SigningExecutor signingExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper = new ObjectMapper();
 
     /**
      * Initializes new DGCI.
@@ -115,33 +108,75 @@ public class DgciService {
      * @param dgciInit object with required parameters.
      * @return DGCI Identifier.
      */
+    @Timed(OPERATION_TIMER)
     public DgciIdentifier initDgci(DgciInit dgciInit) {
+        Duration expirationDuration = expirationService.expirationForType(dgciInit.getGreenCertificateType());
+        SigningKey signingKey = certificateService.selectReservationKey();
+        DgciEntity dgciEntity = newDgciEntity(dgciInit.getGreenCertificateType(), expirationDuration, signingKey);
+        dgciRepository.saveAndFlush(dgciEntity);
+        dgciHashFilter.add(dgciEntity.getDgciHash());
+
+        log.debug("Initialized new certificate with ID '{}' and database ID '{}'.",
+            dgciEntity.getDgci(), dgciEntity.getId());
+
+        return toDgciIdentifier(dgciEntity, signingKey, expirationDuration);
+    }
+
+    /**
+     * Initializes a batch of new DGCIs.
+     * All entities are persisted in one transaction, the ids come from the pooled sequence
+     * so the inserts are sent as JDBC batches. The signing key is selected per DGCI.
+     *
+     * @param dgciBatchInit type and number of DGCIs to reserve
+     * @return DGCI Identifiers in order of creation
+     */
+    @Timed(OPERATION_TIMER)
+    public List<DgciIdentifier> initDgciBatch(DgciBatchInit dgciBatchInit) {
+        Duration expirationDuration = expirationService.expirationForType(dgciBatchInit.getGreenCertificateType());
+        List<DgciEntity> dgciEntities = new ArrayList<>(dgciBatchInit.getCount());
+        List<SigningKey> signingKeys = new ArrayList<>(dgciBatchInit.getCount());
+        for (int i = 0; i < dgciBatchInit.getCount(); i++) {
+            SigningKey signingKey = certificateService.selectReservationKey();
+            signingKeys.add(signingKey);
+            dgciEntities.add(newDgciEntity(dgciBatchInit.getGreenCertificateType(), expirationDuration, signingKey));
+        }
+        dgciRepository.saveAll(dgciEntities);
+
+        log.debug("Initialized batch of {} certificates.", dgciEntities.size());
+
+        List<DgciIdentifier> dgciIdentifiers = new ArrayList<>(dgciEntities.size());
+        for (int i = 0; i < dgciEntities.size(); i++) {
+            dgciHashFilter.add(dgciEntities.get(i).getDgciHash());
+            dgciIdentifiers.add(toDgciIdentifier(dgciEntities.get(i), signingKeys.get(i), expirationDuration));
+        }
+        return dgciIdentifiers;
+    }
+
+    private DgciEntity newDgciEntity(GreenCertificateType greenCertificateType, Duration expirationDuration,
+                                     SigningKey signingKey) {
         DgciEntity dgciEntity = new DgciEntity();
         String dgci = generateDgci();
 
         dgciEntity.setDgci(dgci);
         dgciEntity.setDgciHash(HashUtil.sha256Base64(dgci));
-        dgciEntity.setGreenCertificateType(dgciInit.getGreenCertificateType());
-
-        ZonedDateTime now = ZonedDateTime.now();
-        Duration expirationDuration = expirationService.expirationForType(dgciInit.getGreenCertificateType());
-        ZonedDateTime expiration = now.plus(expirationDuration);
-
-        dgciEntity.setExpiresAt(expiration);
-        dgciRepository.saveAndFlush(dgciEntity);
-
-        log.debug("Initialized new certificate with ID '{}' and database ID '{}'.", dgci, dgciEntity.getId());
+        dgciEntity.setGreenCertificateType(greenCertificateType);
+        dgciEntity.setExpiresAt(dgciEntity.getCreatedAt().plus(expirationDuration));
+        dgciEntity.setKid(signingKey.getKidBase64());
+        return dgciEntity;
+    }
 
-        long expirationSec = expiration.toInstant().getEpochSecond();
+    private DgciIdentifier toDgciIdentifier(DgciEntity dgciEntity, SigningKey signingKey,
+                                            Duration expirationDuration) {
+        long expirationSec = dgciEntity.getExpiresAt().toInstant().getEpochSecond();
         byte[] dgciHash = Base64.getDecoder().decode(dgciEntity.getDgciHash());
         // We need Base64URL encoding because Base64 contains slashes that are not allowed
         // by tomcat
         String id = dgciEntity.getId().toString() + ID_SEP + Base64URL.encode(dgciHash);
         return new DgciIdentifier(
             id,
-            dgci,
-            certificateService.getKidAsBase64(),
-            certificateService.getAlgorithmIdentifier(),
+            dgciEntity.getDgci(),
+            signingKey.getKidBase64(),
+            signingKey.getAlgorithmIdentifier(),
             issuanceConfigProperties.getCountryCode(),
             expirationSec,
             expirationDuration.get(ChronoUnit.SECONDS)
@@ -160,6 +195,7 @@ public class DgciService {
      * @param issueData issueData
      * @return signature data
      */
+    @Timed(OPERATION_TIMER)
     public SignatureData finishDgci(String dgciId, IssueData issueData) {
         log.debug("Finalizing certificate with ID '{}'.", dgciId);
         int colIdx = dgciId.indexOf(ID_SEP);
@@ -178,12 +214,15 @@ public class DgciService {
                 throw new DgciNotFound("DGCI not found (hash mismatch)");
             }
             var dgciEntity = dgciEntityOpt.get();
-            Tan tan = Tan.create();
-            dgciEntity.setHashedTan(tan.getHashedTan());
-            dgciEntity.setCertHash(issueData.getHash());
-            dgciRepository.saveAndFlush(dgciEntity);
+            // the frontend has built the COSE headers with the kid of the reservation
+            final SigningKey signingKey = certificateService.getSigningKey(dgciEntity.getKid());
+            // sign before the row is marked as signed, so a request rejected by a full signing queue can be retried
+            String signatureBase64 = certificateService.signHash(signingKey, issueData.getHash());
+            Tan tan = tanService.createTan();
+            if (dgciRepository.finishSigning(dgciEntity.getId(), issueData.getHash(), tan.getHashedTan()) == 0) {
+                throw new DgciConflict("Already signed");
+            }
             log.debug("Done finalizing certificate with ID '{}'. ", dgciId);
-            String signatureBase64 = certificateService.signHash(issueData.getHash());
             return new SignatureData(tan.getRawTan(), signatureBase64);
         } else {
             log.warn("Cannot find certificate with ID '{}'.", dgciId);
@@ -192,41 +231,207 @@ public class DgciService {
     }
 
     /**
-     * get did document.
+     * finish a batch of DGCIs.
+     * All entities are loaded with one query and checked, then the hashes are signed in parallel on the signing
+     * executor without holding a database connection. Cert hashes and TANs are written afterwards in one short
+     * transaction, which only updates DGCIs that are still unsigned. An item that can not be finished gets an
+     * error and does not stop the other items of the batch.
      *
-     * @param dgciHash dgciHash
-     * @return didDocument
+     * @param items id and issue data per DGCI
+     * @return signature data or error per item, in order of the items
      */
-    public DidDocument getDidDocument(String dgciHash) {
-        Optional<DgciEntity> dgciEntityOpt = dgciRepository.findByDgciHash(dgciHash);
-        if (dgciEntityOpt.isPresent()) {
-            DgciEntity dgciEntity = dgciEntityOpt.get();
-            DidDocument didDocument = new DidDocument();
-            didDocument.setContext("https://w3id.org/did/v1");
-            didDocument.setId(dgciEntity.getDgci());
-            didDocument.setController(dgciEntity.getDgci());
-            List<DidAuthentication> didAuthentications = new ArrayList<>();
-            if (dgciEntity.isClaimed()) {
-                DidAuthentication didAuthentication = new DidAuthentication();
-                didAuthentication.setController(dgciEntity.getDgci());
-                didAuthentication.setType("EcdsaSecp256r1VerificationKey2019");
-                didAuthentication.setExpires(dgciEntity.getExpiresAt()
-                    .toOffsetDateTime().format(
-                        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'")));
-                ObjectMapper objectMapper = new ObjectMapper();
+    @Timed(OPERATION_TIMER)
+    public List<DgciBatchIssueResult> finishDgciBatch(List<DgciBatchIssueItem> items) {
+        if (items == null || items.isEmpty() || items.size() > MAX_BATCH_SIZE) {
+            throw new WrongRequest("batch must contain 1 to " + MAX_BATCH_SIZE + " items");
+        }
+        List<DgciBatchIssueResult> results = new ArrayList<>(items.size());
+        Map<Long, Integer> indexById = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            DgciBatchIssueResult result = new DgciBatchIssueResult();
+            result.setId(items.get(i).getId());
+            results.add(result);
+            Long id = parseBatchItem(items.get(i), result);
+            if (id != null && indexById.putIfAbsent(id, i) != null) {
+                result.setError("duplicate ID in batch");
+            }
+        }
+        List<BatchSigning> signings = findUnsignedBatchItems(items, results, indexById);
+        if (!signings.isEmpty()) {
+            signBatchItems(signings);
+        }
+        log.debug("Done finalizing batch of {} certificates.", items.size());
+        return results;
+    }
+
+    private Long parseBatchItem(DgciBatchIssueItem item, DgciBatchIssueResult result) {
+        String hash = item.getIssueData() != null ? item.getIssueData().getHash() : null;
+        if (hash == null || hash.isBlank() || hash.length() > MAX_HASH_LENGTH) {
+            result.setError("hash missing or too long");
+            return null;
+        }
+        try {
+            Base64.getDecoder().decode(hash);
+        } catch (IllegalArgumentException e) {
+            result.setError("hash is not base64 encoded");
+            return null;
+        }
+        int colIdx = item.getId() != null ? item.getId().indexOf(ID_SEP) : -1;
+        try {
+            if (colIdx > 0) {
+                return Long.parseLong(item.getId().substring(0, colIdx));
+            }
+        } catch (NumberFormatException e) {
+            log.debug("invalid id in batch: {}", item.getId());
+        }
+        result.setError("ID unknown");
+        return null;
+    }
+
+    private List<BatchSigning> findUnsignedBatchItems(List<DgciBatchIssueItem> items,
+                                                      List<DgciBatchIssueResult> results,
+                                                      Map<Long, Integer> indexById) {
+        List<BatchSigning> signings = new ArrayList<>(indexById.size());
+        Map<Long, Integer> notFound = new HashMap<>(indexById);
+        for (DgciEntity dgciEntity : dgciRepository.findAllById(indexById.keySet())) {
+            int index = notFound.remove(dgciEntity.getId());
+            String dgciId = items.get(index).getId();
+            String dgciHashBase64 = Base64.getEncoder().encodeToString(
+                Base64URL.from(dgciId.substring(dgciId.indexOf(ID_SEP) + 1)).decode());
+            if (dgciEntity.getCertHash() != null) {
+                results.get(index).setError("Already signed");
+            } else if (!dgciEntity.getDgciHash().equals(dgciHashBase64)) {
+                results.get(index).setError("DGCI not found (hash mismatch)");
+            } else {
                 try {
-                    JsonNode jwkNode = objectMapper.readTree(dgciEntity.getPublicKey());
-                    didAuthentication.setPublicKeyJsw(jwkNode);
-                } catch (JsonProcessingException e) {
-                    log.error("data error, public key is not jwk json for dgci.id" + dgciEntity.getId());
+                    signings.add(new BatchSigning(dgciEntity.getId(),
+                        certificateService.getSigningKey(dgciEntity.getKid()),
+                        items.get(index).getIssueData().getHash(), results.get(index)));
+                } catch (DgciConflict e) {
+                    results.get(index).setError(e.getMessage());
                 }
-                didAuthentications.add(didAuthentication);
             }
-            didDocument.setAuthentication(didAuthentications);
-            return didDocument;
-        } else {
+        }
+        for (int index : notFound.values()) {
+            results.get(index).setError("Certificate with ID '" + items.get(index).getId() + "' not found");
+        }
+        return signings;
+    }
+
+    private void signBatchItems(List<BatchSigning> signings) {
+        List<SigningKey> signingKeys = new ArrayList<>(signings.size());
+        List<String> hashes = new ArrayList<>(signings.size());
+        for (BatchSigning signing : signings) {
+            signingKeys.add(signing.getSigningKey());
+            hashes.add(signing.getHash());
+        }
+        // signing may wait for the signing queue, so it runs before the transaction
+        List<String> signatures = certificateService.signHashes(signingKeys, hashes);
+        List<Tan> tans = tanService.createTans(signings.size());
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < signings.size(); i++) {
+                BatchSigning signing = signings.get(i);
+                if (dgciRepository.finishSigning(signing.getId(), signing.getHash(),
+                    tans.get(i).getHashedTan()) == 0) {
+                    // signed by a concurrent request since it was loaded
+                    signing.getResult().setError("Already signed");
+                } else {
+                    signing.getResult().setTan(tans.get(i).getRawTan());
+                    signing.getResult().setSignature(signatures.get(i));
+                }
+            }
+        });
+    }
+
+    /**
+     * get did document serialized as JSON.
+     * The document is served from the DID cache, so repeated requests cost neither database nor JSON work.
+     *
+     * @param dgciHash dgciHash
+     * @return didDocument as JSON
+     */
+    @Timed(OPERATION_TIMER)
+    public byte[] getDidDocumentJson(String dgciHash) {
+        DidCacheService.DidCacheEntry entry = findDidCacheEntry(dgciHash);
+        if (entry == null) {
             throw new DgciNotFound("can not find dgci with hash: " + dgciHash);
         }
+        return entry.getDidDocument();
+    }
+
+    private DidCacheService.DidCacheEntry findDidCacheEntry(String dgciHash) {
+        if (!dgciHashFilter.mightContain(dgciHash)) {
+            // definitely not issued by this service, no need to ask cache or database
+            return null;
+        }
+        return didCacheService.get(dgciHash, this::loadDidCacheEntry);
+    }
+
+    private DidCacheService.DidCacheEntry loadDidCacheEntry(String dgciHash) {
+        Optional<DgciEntity> dgciEntityOpt = findByDgciHash(dgciHash);
+        if (dgciEntityOpt.isEmpty()) {
+            return null;
+        }
+        DgciEntity dgciEntity = dgciEntityOpt.get();
+        DgciStatus dgciStatus;
+        if (dgciEntity.isRevoked()) {
+            dgciStatus = DgciStatus.REVOKED;
+        } else if (dgciEntity.isLocked()) {
+            dgciStatus = DgciStatus.LOCKED;
+        } else {
+            dgciStatus = DgciStatus.EXISTS;
+        }
+        try {
+            return new DidCacheService.DidCacheEntry(dgciStatus,
+                objectMapper.writeValueAsBytes(toDidDocument(dgciEntity)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("can not serialize did document", e);
+        }
+    }
+
+    /**
+     * Find by the binary dgci hash. Until the hash migration has completed, it falls back to the Base64 column
+     * for rows written by older versions and not yet migrated.
+     */
+    private Optional<DgciEntity> findByDgciHash(String dgciHash) {
+        byte[] dgciHashBin = HashUtil.decodeSha256Base64(dgciHash);
+        Optional<DgciEntity> dgciEntity;
+        if (dgciHashBin == null) {
+            dgciEntity = Optional.empty();
+        } else if (dgciPartitionService.isPartitioned()) {
+            dgciEntity = dgciRepository.findByDgciHashBinFromLookup(dgciHashBin);
+        } else {
+            dgciEntity = dgciRepository.findByDgciHashBin(dgciHashBin);
+        }
+        if (dgciEntity.isPresent() || dgciHashMigrationService.isCompleted()) {
+            return dgciEntity;
+        }
+        return dgciRepository.findByDgciHash(dgciHash);
+    }
+
+    private DidDocument toDidDocument(DgciEntity dgciEntity) {
+        DidDocument didDocument = new DidDocument();
+        didDocument.setContext("https://w3id.org/did/v1");
+        didDocument.setId(dgciEntity.getDgci());
+        didDocument.setController(dgciEntity.getDgci());
+        List<DidAuthentication> didAuthentications = new ArrayList<>();
+        if (dgciEntity.isClaimed()) {
+            DidAuthentication didAuthentication = new DidAuthentication();
+            didAuthentication.setController(dgciEntity.getDgci());
+            didAuthentication.setType("EcdsaSecp256r1VerificationKey2019");
+            didAuthentication.setExpires(dgciEntity.getExpiresAt()
+                .toOffsetDateTime().format(
+                    DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'")));
+            try {
+                JsonNode jwkNode = objectMapper.readTree(dgciEntity.getPublicKey());
+                didAuthentication.setPublicKeyJsw(jwkNode);
+            } catch (JsonProcessingException e) {
+                log.error("data error, public key is not jwk json for dgci.id" + dgciEntity.getId());
+            }
+            didAuthentications.add(didAuthentication);
+        }
+        didDocument.setAuthentication(didAuthentications);
+        return didDocument;
     }
 
     /**
@@ -255,121 +460,89 @@ public class DgciService {
 
     /**
      * claim dgci to wallet app.
-     * means bind dgci with some public key from wallet app
+     * means bind dgci with some public key from wallet app.
+     * The claim is one conditional update that checks TAN, cert hash, retry counter and TAN expiration in the
+     * database, so concurrent claims of the same dgci can not both succeed. The dgci is only read if the
+     * update did not match, to find the reason.
      *
      * @param claimRequest claim request
      */
+    @Timed(OPERATION_TIMER)
     public ClaimResponse claim(ClaimRequest claimRequest) {
         log.debug("Claim certificate with ID '{}'", claimRequest.getDgci());
-        if (!verifySignature(claimRequest)) {
-            throw new WrongRequest("Signature verification failed");
+        WalletKeyService.ClaimKey claimKey = walletKeyService.parse(claimRequest.getPublicKey());
+        if (!verifySignature(claimRequest, claimKey)) {
+            throw claimRejected("signature", "Signature verification failed");
         }
-        Optional<DgciEntity> dgciEntityOptional = dgciRepository.findByDgci(claimRequest.getDgci());
-        if (dgciEntityOptional.isPresent()) {
-            DgciEntity dgciEntity = dgciEntityOptional.get();
-            if (dgciEntity.getRetryCounter() > MAX_CLAIM_RETRY_TAN) {
-                throw new WrongRequest("Claim max try exceeded");
-            }
-            if (!dgciEntity.getCertHash().equals(claimRequest.getCertHash())) {
-                throw new WrongRequest("Cert hash mismatch");
-            }
-            if (!dgciEntity.getHashedTan().equals(claimRequest.getTanHash())) {
-                dgciEntity.setRetryCounter(dgciEntity.getRetryCounter() + 1);
-                dgciRepository.saveAndFlush(dgciEntity);
-                throw new WrongRequest("TAN mismatch");
-            }
-            if (!dgciEntity.isClaimed()) {
-                ZonedDateTime tanExpireTime = dgciEntity.getCreatedAt()
-                    .plus(issuanceConfigProperties.getTanExpirationHours());
-                if (tanExpireTime.isBefore(ZonedDateTime.now())) {
-                    throw new WrongRequest("TAN expired");
-                }
-            }
-            dgciEntity.setClaimed(true);
-            dgciEntity.setRetryCounter(dgciEntity.getRetryCounter() + 1);
-            dgciEntity.setPublicKey(asJwk(claimRequest.getPublicKey()));
-            Tan newTan = Tan.create();
-            dgciEntity.setHashedTan(newTan.getHashedTan());
-            dgciEntity.setRetryCounter(0);
-            dgciRepository.saveAndFlush(dgciEntity);
-            log.info("Certificate with ID '{}' successfully claimed.", dgciEntity.getDgci());
-
-            ClaimResponse claimResponse = new ClaimResponse();
-            claimResponse.setTan(newTan.getRawTan());
-            return claimResponse;
-        } else {
-            log.warn("Cannot find certificate with ID '{}'", claimRequest.getDgci());
-            throw new DgciNotFound("Cannot find DGCI: " + claimRequest.getDgci());
+        String publicKeyJwk = claimKey.toJwk();
+        Tan newTan = tanService.createTan();
+        int claimed = dgciRepository.claim(claimRequest.getDgci(), claimRequest.getCertHash(),
+            claimRequest.getTanHash(), publicKeyJwk, newTan.getHashedTan(),
+            ClaimRetryCounter.MAX_CLAIM_RETRY_TAN - claimRetryCounter.pendingFailures(claimRequest.getDgci()),
+            ZonedDateTime.now().minus(issuanceConfigProperties.getTanExpirationHours()));
+        if (claimed == 0) {
+            throw claimFailure(claimRequest, publicKeyJwk);
         }
+        claimRetryCounter.reset(claimRequest.getDgci());
+        didCacheService.invalidate(HashUtil.sha256Base64(claimRequest.getDgci()));
+        log.info("Certificate with ID '{}' successfully claimed.", claimRequest.getDgci());
+
+        ClaimResponse claimResponse = new ClaimResponse();
+        claimResponse.setTan(newTan.getRawTan());
+        return claimResponse;
     }
 
-    private String asJwk(eu.europa.ec.dgc.issuance.restapi.dto.PublicKey publicKeyClaim) {
-        byte[] keyBytes = Base64.getDecoder().decode(publicKeyClaim.getValue());
-        X509EncodedKeySpec spec = new X509EncodedKeySpec(keyBytes);
-        KeyFactory kf;
-        try {
-            kf = KeyFactory.getInstance(publicKeyClaim.getType());
-        } catch (NoSuchAlgorithmException e) {
-            throw new WrongRequest("key type not supported: '" + publicKeyClaim.getType()
-                + "', try RSA or EC");
+    private RuntimeException claimFailure(ClaimRequest claimRequest, String publicKeyJwk) {
+        Optional<DgciEntity> dgciEntityOptional = dgciRepository.findByDgci(claimRequest.getDgci());
+        if (dgciEntityOptional.isEmpty()) {
+            log.warn("Cannot find certificate with ID '{}'", claimRequest.getDgci());
+            meterRegistry.counter(CLAIM_REJECTED_COUNTER, "reason", "not_found").increment();
+            return new DgciNotFound("Cannot find DGCI: " + claimRequest.getDgci());
         }
-        PublicKey publicKey;
-        try {
-            publicKey = kf.generatePublic(spec);
-        } catch (InvalidKeySpecException e) {
-            throw new WrongRequest("invalid key");
-        }
-        String jwkString;
-        if (publicKey instanceof RSAPublicKey) {
-            RSAKey jwkKey = new RSAKey.Builder((RSAPublicKey) publicKey).build();
-            jwkString = jwkKey.toJSONString();
-        } else if (publicKey instanceof ECPublicKey) {
-            ECPublicKey ecPublicKey = (ECPublicKey) publicKey;
-            Curve curve = Curve.forECParameterSpec(ecPublicKey.getParams());
-            ECKey jwkKey = new ECKey.Builder(curve,ecPublicKey).build();
-            jwkString = jwkKey.toJSONString();
-        } else {
-            throw new WrongRequest("unsupported key type");
+        DgciEntity dgciEntity = dgciEntityOptional.get();
+        if (claimRetryCounter.isExceeded(dgciEntity)) {
+            return claimRejected("retry_exceeded", "Claim max try exceeded");
         }
-        return jwkString;
-    }
-
-    private boolean verifySignature(ClaimRequest claimRequest) {
-        byte[] keyBytes = Base64.getDecoder().decode(claimRequest.getPublicKey().getValue());
-        X509EncodedKeySpec spec = new X509EncodedKeySpec(keyBytes);
-        KeyFactory kf;
-        try {
-            kf = KeyFactory.getInstance(claimRequest.getPublicKey().getType());
-        } catch (NoSuchAlgorithmException e) {
-            throw new WrongRequest("key type not supported: '" + claimRequest.getPublicKey().getType()
-                + "', try RSA or EC");
+        if (!claimRequest.getCertHash().equals(dgciEntity.getCertHash())) {
+            return claimRejected("cert_hash_mismatch", "Cert hash mismatch");
         }
-        PublicKey publicKey;
-        try {
-            publicKey = kf.generatePublic(spec);
-        } catch (InvalidKeySpecException e) {
-            throw new WrongRequest("invalid key");
+        if (dgciEntity.isClaimed() && publicKeyJwk.equals(dgciEntity.getPublicKey())) {
+            // a concurrent claim with the same key has won and rotated the TAN, this is not a wrong TAN
+            return claimConflict(claimRequest);
         }
-        Signature signature;
-        try {
-            signature = Signature.getInstance(claimRequest.getSigAlg());
-        } catch (NoSuchAlgorithmException e) {
-            throw new WrongRequest("signature algorithm not supported: '" + claimRequest.getSigAlg() + "'");
+        if (!claimRequest.getTanHash().equals(dgciEntity.getHashedTan())) {
+            claimRetryCounter.registerFailure(dgciEntity);
+            return claimRejected("tan_mismatch", "TAN mismatch");
         }
+        if (!dgciEntity.isClaimed()) {
+            ZonedDateTime tanExpireTime = dgciEntity.getCreatedAt()
+                .plus(issuanceConfigProperties.getTanExpirationHours());
+            if (tanExpireTime.isBefore(ZonedDateTime.now())) {
+                return claimRejected("tan_expired", "TAN expired");
+            }
+        }
+        // all checks pass now, so the dgci was changed between update and read
+        return claimConflict(claimRequest);
+    }
+
+    private DgciConflict claimConflict(ClaimRequest claimRequest) {
+        meterRegistry.counter(CLAIM_REJECTED_COUNTER, "reason", "conflict").increment();
+        return new DgciConflict("Concurrent claim of DGCI: " + claimRequest.getDgci());
+    }
+
+    private WrongRequest claimRejected(String reason, String message) {
+        meterRegistry.counter(CLAIM_REJECTED_COUNTER, "reason", reason).increment();
+        return new WrongRequest(message);
+    }
+
+    private boolean verifySignature(ClaimRequest claimRequest, WalletKeyService.ClaimKey claimKey) {
         StringBuilder dataToSign = new StringBuilder();
         dataToSign.append(claimRequest.getTanHash())
             .append(claimRequest.getCertHash())
             .append(claimRequest.getPublicKey().getValue());
-        try {
-            signature.initVerify(publicKey);
-            signature.update(dataToSign.toString().getBytes(StandardCharsets.UTF_8));
-            byte[] sigBytes = Base64.getDecoder().decode(claimRequest.getSignature());
-            return signature.verify(sigBytes);
-        } catch (InvalidKeyException e) {
-            throw new WrongRequest("invalid key for signature");
-        } catch (SignatureException e) {
-            throw new WrongRequest("can not validity signature", e);
-        }
+        byte[] sigBytes = Base64.getDecoder().decode(claimRequest.getSignature());
+        return walletKeyService.verify(claimKey, claimRequest.getSigAlg(),
+            dataToSign.toString().getBytes(StandardCharsets.UTF_8), sigBytes);
     }
 
     /**
@@ -378,82 +551,65 @@ public class DgciService {
      * @param dccJson certificate
      * @return edgc qr code and tan
      */
+    @Timed(OPERATION_TIMER)
     public EgdcCodeData createEdgc(String dccJson) {
-        String dgci = dgciGenerator.newDgci();
-        dccJson = updateCI(dccJson, dgci);
+        // self call, recorded by the createEdgc timer only; the prepareEdgc timer records bulk issuing
+        PreparedEdgc preparedEdgc = prepareEdgc(dccJson);
+        dgciRepository.saveAndFlush(preparedEdgc.getDgciEntity());
+        dgciHashFilter.add(preparedEdgc.getDgciEntity().getDgciHash());
+        return preparedEdgc.getEgdcCodeData();
+    }
 
+    /**
+     * Encode and sign the edgc without persisting it.
+     * The caller is responsible to save the returned entity, this allows to persist many certificates in one batch.
+     *
+     * @param dccJson certificate
+     * @return edgc qr code and tan together with the not yet saved entity
+     */
+    @Timed(OPERATION_TIMER)
+    public PreparedEdgc prepareEdgc(String dccJson) {
         GreenCertificate eudgc;
         try {
             eudgc = Json.Default.decodeFromString(GreenCertificate.Companion.serializer(), dccJson);
         } catch (SerializationException se) {
             throw new WrongRequest(se.getMessage());
         }
-        GreenCertificateType greenCertificateType = GreenCertificateType.Vaccination;
-        if (eudgc.getRecoveryStatements() != null) {
-            for (val v : eudgc.getRecoveryStatements()) {
-                greenCertificateType = GreenCertificateType.Recovery;
-            }
-        }
-        if (eudgc.getTests() != null) {
-            for (val v : eudgc.getTests()) {
-                greenCertificateType = GreenCertificateType.Test;
-            }
-        }
-        if (eudgc.getVaccinations() != null) {
-            for (val v : eudgc.getVaccinations()) {
-                greenCertificateType = GreenCertificateType.Vaccination;
-            }
-        }
-        Chain cborProcessingChain =
-            new Chain(higherOrderValidationService, schemaValidationService, cborService, cwtService, coseService,
-                compressorService, base45Service, contextIdentifierService);
-        ChainResult chainResult = cborProcessingChain.encode(eudgc);
+        String dgci = dgciGenerator.newDgci();
+        EdgcIssuingChain.EncodedEdgc encodedEdgc = signingExecutor.call(() -> edgcIssuingChain.encode(eudgc, dgci));
 
         EgdcCodeData egdcCodeData = new EgdcCodeData();
-        egdcCodeData.setQrCode(chainResult.getStep5Prefixed());
+        egdcCodeData.setQrCode(encodedEdgc.getQrCode());
         egdcCodeData.setDgci(dgci);
-        Tan ta = Tan.create();
+        Tan ta = tanService.createTan();
         egdcCodeData.setTan(ta.getRawTan());
 
+        GreenCertificateType greenCertificateType = getGreenCertificateType(eudgc);
         DgciEntity dgciEntity = new DgciEntity();
         dgciEntity.setDgci(dgci);
-        dgciEntity.setCertHash(Base64.getEncoder().encodeToString(computeCoseSignHash(chainResult.getStep2Cose())));
+        dgciEntity.setCertHash(Base64.getEncoder().encodeToString(computeCoseSignHash(encodedEdgc.getCose())));
+        dgciEntity.setKid(encodedEdgc.getKid());
         dgciEntity.setDgciHash(HashUtil.sha256Base64(dgci));
         dgciEntity.setHashedTan(ta.getHashedTan());
         dgciEntity.setGreenCertificateType(greenCertificateType);
         dgciEntity.setCreatedAt(ZonedDateTime.now());
         dgciEntity.setExpiresAt(ZonedDateTime.now().plus(expirationService.expirationForType(greenCertificateType)));
-        dgciRepository.saveAndFlush(dgciEntity);
-
-        return egdcCodeData;
-    }
 
-    private String updateCI(String dccJson, String dgci) {
-        // The fields can be not modified on GreenCertificate object so we need to set ci on json level
-        ObjectMapper mapper = new ObjectMapper();
-        try {
-            JsonNode dccTree = mapper.readTree(dccJson);
-            updateCI(dccTree, dgci);
-            return mapper.writeValueAsString(dccTree);
-        } catch (JsonProcessingException e) {
-            throw new WrongRequest(e.getMessage());
-        }
+        return new PreparedEdgc(egdcCodeData, dgciEntity);
     }
 
-    private void updateCI(JsonNode jsonNode, String dgci) {
-        if (jsonNode.isObject()) {
-            if (jsonNode.has("ci")) {
-                ((ObjectNode)jsonNode).put("ci",dgci);
-            } else {
-                for (JsonNode value : jsonNode) {
-                    updateCI(value, dgci);
-                }
-            }
-        } else if (jsonNode.isArray()) {
-            for (JsonNode item : jsonNode) {
-                updateCI(item, dgci);
-            }
+    private GreenCertificateType getGreenCertificateType(GreenCertificate eudgc) {
+        GreenCertificateType greenCertificateType;
+        if (eudgc.getVaccinations() != null && eudgc.getVaccinations().length > 0) {
+            greenCertificateType = GreenCertificateType.Vaccination;
+        } else if (eudgc.getTests() != null && eudgc.getTests().length > 0) {
+            greenCertificateType = GreenCertificateType.Test;
+        } else if (eudgc.getRecoveryStatements() != null && eudgc.getRecoveryStatements().length > 0) {
+            greenCertificateType = GreenCertificateType.Recovery;
+        } else {
+            greenCertificateType = GreenCertificateType.Vaccination;
         }
+        return greenCertificateType;
     }
 
     /**
@@ -462,22 +618,28 @@ public class DgciService {
      * @param dgciHash dgci hash
      * @return DgciStatus
      */
+    @Timed(OPERATION_TIMER)
     public DgciStatus checkDgciStatus(String dgciHash) {
         log.debug("Checking status of DGC with hash '{}'...", dgciHash);
-        DgciStatus dgciStatus;
-        Optional<DgciEntity> dgciEntity = dgciRepository.findByDgciHash(dgciHash);
-        if (dgciEntity.isPresent()) {
-            if (dgciEntity.get().isLocked()) {
-                log.debug("DGC with hash '{}' is locked.", dgciHash);
-                dgciStatus = DgciStatus.LOCKED;
-            } else {
-                log.debug("DGC with hash '{}' exists.", dgciHash);
-                dgciStatus = DgciStatus.EXISTS;
-            }
-        } else {
-            log.debug("DGC with hash '{}' does not exist.", dgciHash);
-            dgciStatus = DgciStatus.NOT_EXISTS;
-        }
+        DidCacheService.DidCacheEntry entry = findDidCacheEntry(dgciHash);
+        DgciStatus dgciStatus = entry == null ? DgciStatus.NOT_EXISTS : entry.getStatus();
+        log.debug("DGC with hash '{}' has status {}.", dgciHash, dgciStatus);
         return dgciStatus;
     }
+
+    @Data
+    @AllArgsConstructor
+    public static class PreparedEdgc {
+        private EgdcCodeData egdcCodeData;
+        private DgciEntity dgciEntity;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class BatchSigning {
+        private final long id;
+        private final SigningKey signingKey;
+        private final String hash;
+        private final DgciBatchIssueResult result;
+    }
 }
@@ -0,0 +1,136 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.issuance.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
+import java.io.Serializable;
+import java.util.function.Function;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cache of DID status and DID documents by dgci hash.
+ * The first level is a bounded local cache with a time to live. If issuance.didCache.distributedCacheName
+ * is set and a spring {@link CacheManager} is configured, the named cache is used as second level shared
+ * by all instances. Only existing dgci are cached; every change of the status or the document has to call
+ * {@link #invalidate(String)}.
+ */
+@Slf4j
+@Component
+public class DidCacheService {
+    private final Cache<String, DidCacheEntry> localCache;
+    private final org.springframework.cache.Cache distributedCache;
+
+    /**
+     * Constructor.
+     *
+     * @param issuanceConfigProperties config
+     * @param cacheManager optional cache manager for the distributed second level
+     */
+    public DidCacheService(IssuanceConfigProperties issuanceConfigProperties,
+                           ObjectProvider<CacheManager> cacheManager) {
+        IssuanceConfigProperties.DidCache config = issuanceConfigProperties.getDidCache();
+        if (config.isEnabled()) {
+            localCache = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(config.getTtl())
+                .build();
+            distributedCache = distributedCache(config.getDistributedCacheName(), cacheManager.getIfAvailable());
+        } else {
+            localCache = null;
+            distributedCache = null;
+        }
+    }
+
+    private static org.springframework.cache.Cache distributedCache(String cacheName, CacheManager cacheManager) {
+        if (cacheName == null || cacheName.isEmpty()) {
+            return null;
+        }
+        if (cacheManager == null) {
+            log.warn("no CacheManager configured, DID cache '{}' is local only", cacheName);
+            return null;
+        }
+        log.info("DID cache uses distributed cache '{}'", cacheName);
+        return cacheManager.getCache(cacheName);
+    }
+
+    /**
+     * Get cached entry or load it.
+     * The local cache blocks concurrent loads of the same hash and an invalidation during a load
+     * discards the loaded entry, so a claim can not be overwritten by a concurrent stale load.
+     *
+     * @param dgciHash dgci hash
+     * @param loader loads the entry from database, returns null if the dgci does not exist
+     * @return entry or null if the dgci does not exist
+     */
+    public DidCacheEntry get(String dgciHash, Function<String, DidCacheEntry> loader) {
+        if (localCache == null) {
+            return loader.apply(dgciHash);
+        }
+        return localCache.get(dgciHash, hash -> loadDistributed(hash, loader));
+    }
+
+    private DidCacheEntry loadDistributed(String dgciHash, Function<String, DidCacheEntry> loader) {
+        if (distributedCache == null) {
+            return loader.apply(dgciHash);
+        }
+        DidCacheEntry entry = distributedCache.get(dgciHash, DidCacheEntry.class);
+        if (entry == null) {
+            entry = loader.apply(dgciHash);
+            if (entry != null) {
+                distributedCache.put(dgciHash, entry);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Remove the entry of the dgci hash from all cache levels.
+     *
+     * @param dgciHash dgci hash
+     */
+    public void invalidate(String dgciHash) {
+        if (localCache != null) {
+            localCache.invalidate(dgciHash);
+        }
+        if (distributedCache != null) {
+            distributedCache.evict(dgciHash);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class DidCacheEntry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final DgciService.DgciStatus status;
+        /**
+         * DID document already serialized to JSON.
+         */
+        private final byte[] didDocument;
+    }
+}
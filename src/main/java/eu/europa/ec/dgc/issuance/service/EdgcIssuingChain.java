@@ -0,0 +1,147 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.issuance.service;
+
+import com.upokecenter.cbor.CBORObject;
+import com.upokecenter.cbor.CBORType;
+import ehn.techiop.hcert.kotlin.chain.Base45Service;
+import ehn.techiop.hcert.kotlin.chain.CborService;
+import ehn.techiop.hcert.kotlin.chain.CompressorService;
+import ehn.techiop.hcert.kotlin.chain.ContextIdentifierService;
+import ehn.techiop.hcert.kotlin.chain.CoseService;
+import ehn.techiop.hcert.kotlin.chain.impl.DefaultCoseService;
+import ehn.techiop.hcert.kotlin.data.GreenCertificate;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.stereotype.Component;
+
+/**
+ * Encoding chain for backend issuing.
+ * It runs the same stages as the hcert-kotlin Chain (CBOR, CWT, COSE, compression, Base45, context prefix),
+ * but the certificate is parsed only once by the caller: the DGCI is set on the CBOR level and the CWT
+ * is built from the already parsed certificate, so no stage decodes its input back into JSON.
+ * Every stage is timed as issuance.chain.stage with the tag stage.
+ * Every certificate is signed by one of the active signing keys, selected by the {@link CertificateService}.
+ */
+@Component
+public class EdgcIssuingChain {
+    private static final String CERTIFICATE_IDENTIFIER = "ci";
+    private static final String STAGE_TIMER = "issuance.chain.stage";
+
+    private final CborService cborService;
+    private final ConfigurableCwtService cwtService;
+    private final CertificateService certificateService;
+    private final Map<String, CoseService> coseServices = new HashMap<>();
+    private final CompressorService compressorService;
+    private final Base45Service base45Service;
+    private final ContextIdentifierService contextIdentifierService;
+    private final ExpirationService expirationService;
+    private final Timer cborTimer;
+    private final Timer cwtTimer;
+    private final Timer coseTimer;
+    private final Timer compressTimer;
+    private final Timer base45Timer;
+    private final Timer contextTimer;
+
+    /**
+     * Constructor.
+     * The COSE service bean signs with the primary key, a COSE service is created for each further active key.
+     */
+    public EdgcIssuingChain(CborService cborService, ConfigurableCwtService cwtService, CoseService coseService,
+                            CompressorService compressorService, Base45Service base45Service,
+                            ContextIdentifierService contextIdentifierService, ExpirationService expirationService,
+                            CertificateService certificateService, SigningExecutor signingExecutor,
+                            MeterRegistry meterRegistry) {
+        this.cborService = cborService;
+        this.cwtService = cwtService;
+        this.certificateService = certificateService;
+        coseServices.put(certificateService.getKidAsBase64(), coseService);
+        for (SigningKey signingKey : certificateService.getSigningKeys()) {
+            if (signingKey.isActive() && !coseServices.containsKey(signingKey.getKidBase64())) {
+                coseServices.put(signingKey.getKidBase64(), new SigningCoseService(
+                    new DefaultCoseService(new EhdCryptoService(signingKey)), signingExecutor));
+            }
+        }
+        this.compressorService = compressorService;
+        this.base45Service = base45Service;
+        this.contextIdentifierService = contextIdentifierService;
+        this.expirationService = expirationService;
+        cborTimer = meterRegistry.timer(STAGE_TIMER, "stage", "cbor");
+        cwtTimer = meterRegistry.timer(STAGE_TIMER, "stage", "cwt");
+        coseTimer = meterRegistry.timer(STAGE_TIMER, "stage", "cose");
+        compressTimer = meterRegistry.timer(STAGE_TIMER, "stage", "compress");
+        base45Timer = meterRegistry.timer(STAGE_TIMER, "stage", "base45");
+        contextTimer = meterRegistry.timer(STAGE_TIMER, "stage", "context");
+    }
+
+    /**
+     * Encode and sign the certificate.
+     *
+     * @param eudgc parsed certificate
+     * @param dgci the DGCI that replaces all certificate identifiers (ci) of the certificate
+     * @return the signed COSE message, the prefixed QR code content and the kid of the signing key
+     */
+    public EncodedEdgc encode(GreenCertificate eudgc, String dgci) {
+        CBORObject dcc = cborTimer.record(() -> {
+            CBORObject cbor = CBORObject.DecodeFromBytes(cborService.encode(eudgc));
+            updateCI(cbor, dgci);
+            return cbor;
+        });
+        ExpirationService.CwtTimeFields cwtTimes = expirationService.calculateCwtExpiration(eudgc);
+        byte[] cwt = cwtTimer.record(() -> cwtService.encode(dcc, cwtTimes));
+        SigningKey signingKey = certificateService.selectSigningKey();
+        CoseService coseService = coseServices.get(signingKey.getKidBase64());
+        byte[] cose = coseTimer.record(() -> signingKey.use(() -> coseService.encode(cwt)));
+        byte[] compressed = compressTimer.record(() -> compressorService.encode(cose));
+        String encoded = base45Timer.record(() -> base45Service.encode(compressed));
+        String qrCode = contextTimer.record(() -> contextIdentifierService.encode(encoded));
+        return new EncodedEdgc(cose, qrCode, cwtTimes, signingKey.getKidBase64());
+    }
+
+    private void updateCI(CBORObject cbor, String dgci) {
+        if (cbor.getType() == CBORType.Map) {
+            if (cbor.ContainsKey(CERTIFICATE_IDENTIFIER)) {
+                cbor.set(CBORObject.FromObject(CERTIFICATE_IDENTIFIER), CBORObject.FromObject(dgci));
+            } else {
+                for (CBORObject value : cbor.getValues()) {
+                    updateCI(value, dgci);
+                }
+            }
+        } else if (cbor.getType() == CBORType.Array) {
+            for (int i = 0; i < cbor.size(); i++) {
+                updateCI(cbor.get(i), dgci);
+            }
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class EncodedEdgc {
+        private byte[] cose;
+        private String qrCode;
+        private ExpirationService.CwtTimeFields cwtTimes;
+        private String kid;
+    }
+}
@@ -1,6 +1,7 @@
 package eu.europa.ec.dgc.issuance.service;
 
 import COSE.CoseException;
+import COSE.HeaderKeys;
 import COSE.KeyKeys;
 import COSE.Message;
 import COSE.OneKey;
@@ -23,9 +24,11 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.math.BigInteger;
+import java.security.PublicKey;
 import java.security.interfaces.ECPublicKey;
 import java.security.interfaces.RSAPublicKey;
 import java.util.Arrays;
+import java.util.Base64;
 import lombok.AllArgsConstructor;
 import lombok.val;
 import org.bouncycastle.util.encoders.Hex;
@@ -99,15 +102,29 @@ public class EdgcValidator {
     private void validateSignature(EgcDecodeResult egcDecodeResult,
                                    StringBuilder errorMessages, Sign1Message message)  {
         try {
-            OneKey oneKey = getOneKeyForValidation();
+            OneKey oneKey = getOneKeyForValidation(getPublicKeyForValidation(message));
             egcDecodeResult.setValidated(message.validate(oneKey));
         } catch (CoseException coseException) {
             errorMessages.append("COSE Validation error: ")
                 .append((coseException.getCause() != null
                     ? coseException.getCause().getMessage() : coseException.getMessage()));
+        } catch (DgciConflict unknownKid) {
+            errorMessages.append("COSE Validation error: ").append(unknownKid.getMessage());
         }
     }
 
+    /**
+     * Public key of the signing key named by the kid header, the primary key if the message has no kid.
+     */
+    private PublicKey getPublicKeyForValidation(Sign1Message message) {
+        CBORObject kid = message.findAttribute(HeaderKeys.KID);
+        if (kid == null || kid.getType() != CBORType.ByteString) {
+            return certificateService.getPublicKey();
+        }
+        return certificateService.getSigningKey(Base64.getEncoder().encodeToString(kid.GetByteString()))
+            .getPublicKey();
+    }
+
     private JsonNode cborToJson(CBORObject cborObject) throws IOException {
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         CBORObject.WriteJSON(cborObject, bos);
@@ -132,17 +149,17 @@ public class EdgcValidator {
     }
 
     @NotNull
-    private OneKey getOneKeyForValidation() throws CoseException {
+    private OneKey getOneKeyForValidation(PublicKey publicKey) throws CoseException {
         CBORObject map = CBORObject.NewMap();
         OneKey oneKey;
-        if (certificateService.getPublicKey() instanceof RSAPublicKey) {
-            RSAPublicKey rsaPublicKey = (RSAPublicKey) certificateService.getPublicKey();
+        if (publicKey instanceof RSAPublicKey) {
+            RSAPublicKey rsaPublicKey = (RSAPublicKey) publicKey;
             map.set(KeyKeys.KeyType.AsCBOR(), KeyKeys.KeyType_RSA);
             map.set(KeyKeys.RSA_N.AsCBOR(), stripLeadingZero(rsaPublicKey.getModulus()));
             map.set(KeyKeys.RSA_E.AsCBOR(), stripLeadingZero(rsaPublicKey.getPublicExponent()));
             oneKey = new OneKey(map);
         } else {
-            ECPublicKey ecPublicKey = (ECPublicKey) certificateService.getPublicKey();
+            ECPublicKey ecPublicKey = (ECPublicKey) publicKey;
             map.set(KeyKeys.KeyType.AsCBOR(), KeyKeys.KeyType_EC2);
             map.set(KeyKeys.EC2_Curve.AsCBOR(), getEcCurve(ecPublicKey));
             map.set(KeyKeys.EC2_X.AsCBOR(), stripLeadingZero(ecPublicKey.getW().getAffineX()));
@@ -20,7 +20,6 @@
 
 package eu.europa.ec.dgc.issuance.service;
 
-import COSE.AlgorithmID;
 import com.upokecenter.cbor.CBORObject;
 import ehn.techiop.hcert.kotlin.chain.CryptoService;
 import ehn.techiop.hcert.kotlin.chain.VerificationResult;
@@ -32,10 +31,10 @@ import ehn.techiop.hcert.kotlin.crypto.PrivKey;
 import ehn.techiop.hcert.kotlin.crypto.PubKey;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
-import java.security.interfaces.RSAPrivateCrtKey;
 import java.util.Arrays;
 import java.util.List;
 import kotlin.Pair;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -50,17 +49,23 @@ public class EhdCryptoService implements CryptoService {
      *
      * @param certificateService certificateService
      */
+    @Autowired
     public EhdCryptoService(CertificateService certificateService) {
-        this.cert = certificateService.getCertficate();
-        this.privateKey = certificateService.getPrivateKey();
-        kid = certificateService.getKid();
-        if (this.privateKey instanceof RSAPrivateCrtKey) {
-            headers = Arrays.asList(new Pair<>(CoseHeaderKeys.ALGORITHM, AlgorithmID.RSA_PSS_256.AsCBOR()),
-                new Pair<>(CoseHeaderKeys.KID, CBORObject.FromObject(kid)));
-        } else {
-            headers = Arrays.asList(new Pair<>(CoseHeaderKeys.ALGORITHM, AlgorithmID.ECDSA_256.AsCBOR()),
-                new Pair<>(CoseHeaderKeys.KID, CBORObject.FromObject(kid)));
-        }
+        this(certificateService.getSigningKey(certificateService.getKidAsBase64()));
+    }
+
+    /**
+     * Crypto service of one signing key, the COSE headers carry its kid and algorithm.
+     *
+     * @param signingKey signing key
+     */
+    public EhdCryptoService(SigningKey signingKey) {
+        this.cert = signingKey.getCertificate();
+        this.privateKey = signingKey.getPrivateKey();
+        kid = signingKey.getKid();
+        headers = Arrays.asList(
+            new Pair<>(CoseHeaderKeys.ALGORITHM, CBORObject.FromObject(signingKey.getAlgorithmIdentifier())),
+            new Pair<>(CoseHeaderKeys.KID, CBORObject.FromObject(kid)));
     }
 
 
@@ -76,7 +81,7 @@ public class EhdCryptoService implements CryptoService {
 
     @Override
     public PubKey getCborVerificationKey(byte[] bytes, VerificationResult verificationResult) {
-        if (Arrays.compare(this.kid, kid) == 0) {
+        if (Arrays.compare(this.kid, bytes) == 0) {
             return new JvmPubKey(cert.getPublicKey());
         } else {
             throw new IllegalArgumentException("unknown kid");
@@ -0,0 +1,342 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.issuance.service;
+
+import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
+import eu.europa.ec.dgc.issuance.repository.DgciRepository;
+import eu.europa.ec.dgc.issuance.utils.HashUtil;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Downloadable list of revoked dgci for offline verifiers.
+ * The list holds the first issuance.revocationList.prefixLength bytes of the SHA-256 dgci hash of every revoked
+ * dgci, sorted, packed into one binary blob behind a bloom filter over the same prefixes. Verifiers check the
+ * bloom filter and only on a hit search the sorted prefixes. Binary layout, all numbers big endian:
+ * <pre>
+ *  0  4  magic "DRL1"
+ *  4  1  type, 0 full list, 1 delta
+ *  5  1  prefix length L
+ *  6  1  number of bloom hash functions k, 0 without bloom filter
+ *  7  1  reserved, 0
+ *  8  8  version, revocation time of the newest entry in epoch millis
+ * 16  8  delta: requested since time in epoch millis, full list: 0
+ * 24  4  number of prefixes n
+ * 28  4  bloom filter length in bytes m
+ * 32  m  bloom filter, bit i is (byte i / 8) &amp; (1 &lt;&lt; i % 8); for j in 0..k-1 the bit
+ *        (h1 + j * h2) mod (8 * m) is set, h1 and h2 are the first two unsigned 32 bit words of the prefix
+ * 32+m   n * L sorted prefixes, compared as unsigned bytes
+ * </pre>
+ * A delta contains the prefixes revoked since the given time and no bloom filter. Revocations only add
+ * entries, prefixes of purged dgci disappear with the next full list. Version and content only depend on
+ * the database, so all instances serve the same list.
+ * The list is built after startup, synced incrementally after every revocation and periodically with dgci
+ * revoked by other instances, and rebuilt from the complete table every rebuild interval.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnExpression("${issuance.endpoints.revocationList:false}")
+public class RevocationListService {
+    /**
+     * Overlap of sync windows and deltas, covers transactions in flight and clock differences between instances.
+     */
+    private static final Duration SYNC_OVERLAP = Duration.ofMinutes(5);
+    private static final byte[] MAGIC = {'D', 'R', 'L', '1'};
+    private static final byte TYPE_FULL = 0;
+    private static final byte TYPE_DELTA = 1;
+    private static final int HEADER_LENGTH = 32;
+    private static final int MIN_PREFIX_LENGTH = 8;
+    private static final int MAX_PREFIX_LENGTH = 32;
+
+    private final DgciRepository dgciRepository;
+    private final IssuanceConfigProperties issuanceConfigProperties;
+    private final TaskScheduler taskScheduler;
+
+    private volatile RevocationList revocationList;
+    private ZonedDateTime lastSync;
+
+    /**
+     * Build the list and schedule sync and rebuild.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        IssuanceConfigProperties.RevocationList config = issuanceConfigProperties.getRevocationList();
+        if (config.getPrefixLength() < MIN_PREFIX_LENGTH || config.getPrefixLength() > MAX_PREFIX_LENGTH) {
+            throw new IllegalArgumentException("issuance.revocationList.prefixLength must be between "
+                + MIN_PREFIX_LENGTH + " and " + MAX_PREFIX_LENGTH);
+        }
+        rebuild();
+        taskScheduler.scheduleWithFixedDelay(this::sync, Instant.now().plus(config.getSyncInterval()),
+            config.getSyncInterval());
+        taskScheduler.scheduleWithFixedDelay(this::rebuild, Instant.now().plus(config.getRebuildInterval()),
+            config.getRebuildInterval());
+    }
+
+    /**
+     * Current full list.
+     *
+     * @return list or null if it is not built yet
+     */
+    public RevocationList getRevocationList() {
+        return revocationList;
+    }
+
+    /**
+     * Delta of the current list.
+     * Contains all prefixes revoked at or after since minus a small overlap, so a client can pass the
+     * version of its last list.
+     *
+     * @param since epoch millis, usually the version of the list the client has
+     * @return delta blob or null if the list is not built yet
+     */
+    public byte[] getDelta(long since) {
+        RevocationList current = revocationList;
+        if (current == null) {
+            return null;
+        }
+        long from = since - SYNC_OVERLAP.toMillis();
+        List<Entry> changed = new ArrayList<>();
+        for (Entry entry : current.entries) {
+            if (entry.revokedAt >= from) {
+                changed.add(entry);
+            }
+        }
+        return encode(TYPE_DELTA, current.version, since, changed.toArray(new Entry[0]), 0);
+    }
+
+    /**
+     * Build a new list from all revoked dgci and replace the current list.
+     */
+    public synchronized void rebuild() {
+        IssuanceConfigProperties.RevocationList config = issuanceConfigProperties.getRevocationList();
+        long startTime = System.currentTimeMillis();
+        ZonedDateTime syncStart = ZonedDateTime.now();
+        try {
+            List<Entry> entries = new ArrayList<>();
+            long afterId = 0;
+            PageRequest page = PageRequest.of(0, config.getPageSize());
+            List<DgciRepository.RevokedDgciView> rows;
+            do {
+                rows = dgciRepository.findRevokedAfter(afterId, page);
+                for (DgciRepository.RevokedDgciView row : rows) {
+                    addEntry(entries, row);
+                    afterId = row.getId();
+                }
+            } while (rows.size() == config.getPageSize());
+            entries.sort(Entry.BY_PREFIX);
+            revocationList = build(deduplicate(entries));
+            lastSync = syncStart;
+            log.info("revocation list built with {} entries in {} ms", revocationList.getCount(),
+                System.currentTimeMillis() - startTime);
+        } catch (RuntimeException e) {
+            log.error("can not build revocation list", e);
+        }
+    }
+
+    /**
+     * Add dgci revoked since the last sync, also by other instances.
+     */
+    public synchronized void sync() {
+        RevocationList current = revocationList;
+        if (current == null) {
+            return;
+        }
+        ZonedDateTime syncStart = ZonedDateTime.now();
+        try {
+            List<Entry> added = new ArrayList<>();
+            for (DgciRepository.RevokedDgciView row : dgciRepository.findRevokedSince(lastSync.minus(SYNC_OVERLAP))) {
+                addEntry(added, row);
+            }
+            added.removeIf(entry -> Arrays.binarySearch(current.entries, entry, Entry.BY_PREFIX) >= 0);
+            if (!added.isEmpty()) {
+                added.sort(Entry.BY_PREFIX);
+                revocationList = build(merge(current.entries, deduplicate(added)));
+                log.info("revocation list synced, {} entries added", revocationList.getCount() - current.getCount());
+            }
+            lastSync = syncStart;
+        } catch (RuntimeException e) {
+            log.warn("can not sync revocation list: {}", e.getMessage());
+        }
+    }
+
+    private void addEntry(List<Entry> entries, DgciRepository.RevokedDgciView row) {
+        byte[] hash;
+        try {
+            hash = Base64.getDecoder().decode(row.getDgciHash());
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        int prefixLength = issuanceConfigProperties.getRevocationList().getPrefixLength();
+        if (hash.length < prefixLength) {
+            return;
+        }
+        long revokedAt = row.getRevokedAt() == null ? 0 : row.getRevokedAt().toInstant().toEpochMilli();
+        entries.add(new Entry(Arrays.copyOf(hash, prefixLength), revokedAt));
+    }
+
+    private RevocationList build(Entry[] entries) {
+        long version = 0;
+        for (Entry entry : entries) {
+            version = Math.max(version, entry.revokedAt);
+        }
+        double falsePositiveRate = issuanceConfigProperties.getRevocationList().getFalsePositiveRate();
+        byte[] blob = encode(TYPE_FULL, version, 0, entries, falsePositiveRate);
+        return new RevocationList(entries, version, blob);
+    }
+
+    /**
+     * Remove entries with the same prefix from a sorted list, the earliest revocation is kept.
+     */
+    private static Entry[] deduplicate(List<Entry> sorted) {
+        List<Entry> unique = new ArrayList<>(sorted.size());
+        for (Entry entry : sorted) {
+            Entry last = unique.isEmpty() ? null : unique.get(unique.size() - 1);
+            if (last != null && Entry.BY_PREFIX.compare(last, entry) == 0) {
+                if (entry.revokedAt < last.revokedAt) {
+                    unique.set(unique.size() - 1, entry);
+                }
+            } else {
+                unique.add(entry);
+            }
+        }
+        return unique.toArray(new Entry[0]);
+    }
+
+    private static Entry[] merge(Entry[] left, Entry[] right) {
+        Entry[] merged = new Entry[left.length + right.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < left.length && j < right.length) {
+            merged[k++] = Entry.BY_PREFIX.compare(left[i], right[j]) <= 0 ? left[i++] : right[j++];
+        }
+        while (i < left.length) {
+            merged[k++] = left[i++];
+        }
+        while (j < right.length) {
+            merged[k++] = right[j++];
+        }
+        return merged;
+    }
+
+    private byte[] encode(byte type, long version, long since, Entry[] entries, double falsePositiveRate) {
+        int prefixLength = issuanceConfigProperties.getRevocationList().getPrefixLength();
+        int n = entries.length;
+        int bloomLength = 0;
+        int hashCount = 0;
+        if (falsePositiveRate > 0 && n > 0) {
+            long bits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            bloomLength = (int) Math.max(1, (bits + 7) / 8);
+            hashCount = (int) Math.max(1, Math.min(Byte.MAX_VALUE, Math.round(8.0 * bloomLength / n * Math.log(2))));
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + bloomLength + n * prefixLength);
+        buffer.put(MAGIC)
+            .put(type)
+            .put((byte) prefixLength)
+            .put((byte) hashCount)
+            .put((byte) 0)
+            .putLong(version)
+            .putLong(since)
+            .putInt(n)
+            .putInt(bloomLength);
+        byte[] blob = buffer.array();
+        long bitCount = 8L * bloomLength;
+        for (int i = 0; hashCount > 0 && i < n; i++) {
+            ByteBuffer prefix = ByteBuffer.wrap(entries[i].prefix);
+            long h1 = Integer.toUnsignedLong(prefix.getInt());
+            long h2 = Integer.toUnsignedLong(prefix.getInt());
+            for (int j = 0; j < hashCount; j++) {
+                long index = (h1 + j * h2) % bitCount;
+                blob[HEADER_LENGTH + (int) (index >>> 3)] |= (byte) (1 << (index & 7));
+            }
+        }
+        buffer.position(HEADER_LENGTH + bloomLength);
+        for (Entry entry : entries) {
+            buffer.put(entry.prefix);
+        }
+        return blob;
+    }
+
+    /**
+     * Strong etag of a list or delta blob.
+     *
+     * @param blob blob
+     * @return quoted etag
+     */
+    public static String etag(byte[] blob) {
+        return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(HashUtil.sha256(blob)) + "\"";
+    }
+
+    /**
+     * Immutable full revocation list, replaced as a whole on sync and rebuild.
+     */
+    @Getter
+    public static final class RevocationList {
+        private final long version;
+        private final int count;
+        private final byte[] blob;
+        /**
+         * Strong etag derived from the content, equal on all instances.
+         */
+        private final String etag;
+        @Getter(AccessLevel.NONE)
+        private final Entry[] entries;
+
+        RevocationList(Entry[] entries, long version, byte[] blob) {
+            this.entries = entries;
+            this.version = version;
+            this.count = entries.length;
+            this.blob = blob;
+            this.etag = etag(blob);
+        }
+    }
+
+    private static final class Entry {
+        static final Comparator<Entry> BY_PREFIX = (a, b) -> Arrays.compareUnsigned(a.prefix, b.prefix);
+
+        private final byte[] prefix;
+        private final long revokedAt;
+
+        Entry(byte[] prefix, long revokedAt) {
+            this.prefix = prefix;
+            this.revokedAt = revokedAt;
+        }
+    }
+}
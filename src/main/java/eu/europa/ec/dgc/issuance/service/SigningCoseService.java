@@ -0,0 +1,46 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.issuance.service;
+
+import ehn.techiop.hcert.kotlin.chain.CoseService;
+import ehn.techiop.hcert.kotlin.chain.VerificationResult;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * COSE service that signs on the {@link SigningExecutor}.
+ * Every user of the hcert-kotlin chain (issuing chain, test tools) is bounded by the same signing pool.
+ */
+@RequiredArgsConstructor
+public class SigningCoseService implements CoseService {
+    private final CoseService delegate;
+    private final SigningExecutor signingExecutor;
+
+    @Override
+    public byte[] encode(byte[] input) {
+        return signingExecutor.call(() -> delegate.encode(input));
+    }
+
+    @Override
+    public byte[] decode(byte[] input, VerificationResult verificationResult) {
+        return delegate.decode(input, verificationResult);
+    }
+}
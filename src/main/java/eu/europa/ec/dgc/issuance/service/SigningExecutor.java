@@ -0,0 +1,200 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.issuance.service;
+
+import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded pool for the CPU bound work of issuing (encoding and signing).
+ * Request threads only wait for the result, so the number of concurrent signatures is limited to the
+ * processors even with hundreds of request threads or virtual threads. The signers keep per thread state
+ * (prepared EC signer, secure random), which is created once per worker instead of once per request thread.
+ * When all workers are busy and the queue is full, new tasks are rejected with {@link SigningOverloaded}
+ * instead of slowing down every request.
+ */
+@Slf4j
+@Component
+public class SigningExecutor {
+    private static final ThreadLocal<Boolean> WORKER = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final IssuanceConfigProperties issuanceConfigProperties;
+    private final BlockingQueue<Runnable> queue;
+    private final Timer waitTimer;
+    private final Timer executionTimer;
+    private final Counter rejectedCounter;
+    private ThreadPoolExecutor executor;
+
+    /**
+     * Constructor.
+     *
+     * @param issuanceConfigProperties config
+     * @param meterRegistry registry for queue and signing metrics
+     */
+    public SigningExecutor(IssuanceConfigProperties issuanceConfigProperties, MeterRegistry meterRegistry) {
+        this.issuanceConfigProperties = issuanceConfigProperties;
+        queue = new ArrayBlockingQueue<>(Math.max(1, issuanceConfigProperties.getExecution().getQueueCapacity()));
+        meterRegistry.gauge("issuance.signing.queue.size", queue, BlockingQueue::size);
+        waitTimer = meterRegistry.timer("issuance.signing.wait");
+        executionTimer = meterRegistry.timer("issuance.signing.execution");
+        rejectedCounter = meterRegistry.counter("issuance.signing.rejected");
+    }
+
+    /**
+     * Create the worker pool.
+     */
+    @PostConstruct
+    public void startExecutor() {
+        int threads = issuanceConfigProperties.getExecution().getCpuThreads();
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("signing-");
+        threadFactory.setDaemon(true);
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue,
+            runnable -> threadFactory.newThread(() -> {
+                WORKER.set(Boolean.TRUE);
+                runnable.run();
+            }));
+        log.info("signing executor started with {} threads and queue capacity {}", threads,
+            queue.remainingCapacity());
+    }
+
+    @PreDestroy
+    public void stopExecutor() {
+        executor.shutdown();
+    }
+
+    /**
+     * Run the task on the pool and wait for its result.
+     * Tasks submitted from a worker of the pool run directly, so nested calls can not deadlock.
+     * Runtime exceptions of the task are thrown unchanged.
+     *
+     * @param task encoding or signing work
+     * @param <T> result type
+     * @return result of the task
+     * @throws SigningOverloaded if the queue is full
+     */
+    public <T> T call(Supplier<T> task) {
+        if (WORKER.get()) {
+            return task.get();
+        }
+        return await(submit(task));
+    }
+
+    /**
+     * Run many tasks in parallel and wait for all results.
+     * The tasks are split into one slice per thread, so a large batch takes only as many queue places
+     * as there are threads and does not push out single requests. If a slice is rejected, the slices submitted
+     * before are cancelled.
+     *
+     * @param tasks encoding or signing work
+     * @param <T> result type
+     * @return results in order of the tasks
+     * @throws SigningOverloaded if the queue is full
+     */
+    public <T> List<T> callAll(List<Supplier<T>> tasks) {
+        if (WORKER.get() || tasks.isEmpty()) {
+            return runAll(tasks);
+        }
+        int slices = Math.min(executor.getCorePoolSize(), tasks.size());
+        int sliceSize = (tasks.size() + slices - 1) / slices;
+        List<Future<List<T>>> futures = new ArrayList<>(slices);
+        try {
+            for (int from = 0; from < tasks.size(); from += sliceSize) {
+                List<Supplier<T>> slice = tasks.subList(from, Math.min(from + sliceSize, tasks.size()));
+                futures.add(submit(() -> runAll(slice)));
+            }
+        } catch (SigningOverloaded e) {
+            // the results of the submitted slices would be thrown away, free their workers
+            futures.forEach(future -> future.cancel(true));
+            throw e;
+        }
+        List<T> results = new ArrayList<>(tasks.size());
+        for (Future<List<T>> future : futures) {
+            results.addAll(await(future));
+        }
+        return results;
+    }
+
+    private static <T> List<T> runAll(List<Supplier<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        for (Supplier<T> task : tasks) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("signing cancelled");
+            }
+            results.add(task.get());
+        }
+        return results;
+    }
+
+    private <T> Future<T> submit(Supplier<T> task) {
+        long submitted = System.nanoTime();
+        try {
+            return executor.submit(() -> {
+                waitTimer.record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+                return executionTimer.record(task);
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw new SigningOverloaded("signing queue is full", issuanceConfigProperties.getExecution()
+                .getRetryAfter());
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("signing failed", cause);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for signing", e);
+        }
+    }
+}
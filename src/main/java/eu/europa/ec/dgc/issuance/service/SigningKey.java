@@ -0,0 +1,107 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.issuance.service;
+
+import COSE.AlgorithmID;
+import eu.europa.ec.dgc.utils.CertificateUtils;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * One signing key (DSC) of the issuer with its kid and COSE algorithm.
+ * Signatures running with the key are counted, the count is used to select the least loaded key.
+ */
+@Getter
+public class SigningKey {
+    private final String alias;
+    private final X509Certificate certificate;
+    private final PrivateKey privateKey;
+    private final byte[] kid;
+    private final String kidBase64;
+    private final int algorithmIdentifier;
+    /**
+     * False for retired keys, they only finish certificates that were reserved with them.
+     */
+    private final boolean active;
+    @Getter(AccessLevel.NONE)
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Constructor.
+     *
+     * @param alias alias of the key in the key store or token
+     * @param certificate certificate of the key
+     * @param privateKey private key
+     * @param active true if the key signs new certificates
+     */
+    public SigningKey(String alias, X509Certificate certificate, PrivateKey privateKey, boolean active) {
+        this.alias = alias;
+        this.certificate = certificate;
+        this.privateKey = privateKey;
+        this.active = active;
+        kidBase64 = new CertificateUtils().getCertKid(certificate);
+        kid = Base64.getDecoder().decode(kidBase64);
+        algorithmIdentifier = algorithmIdentifier(certificate.getPublicKey());
+    }
+
+    public PublicKey getPublicKey() {
+        return certificate.getPublicKey();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Run a signature with this key, counted while it runs.
+     *
+     * @param signing signature computation
+     * @param <T> result type
+     * @return result of the signing
+     */
+    public <T> T use(Supplier<T> signing) {
+        inFlight.incrementAndGet();
+        try {
+            return signing.get();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static int algorithmIdentifier(PublicKey publicKey) {
+        if (publicKey instanceof RSAPublicKey) {
+            return AlgorithmID.RSA_PSS_256.AsCBOR().AsInt32();
+        } else if (publicKey instanceof ECPublicKey) {
+            return AlgorithmID.ECDSA_256.AsCBOR().AsInt32();
+        } else {
+            throw new IllegalArgumentException("unsupported key type");
+        }
+    }
+}
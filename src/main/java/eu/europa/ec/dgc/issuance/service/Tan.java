@@ -9,6 +9,10 @@ public final class Tan {
     private static final int TAN_LENGTH = 8;
     private static final String HASH_ALGORITHM = "SHA-256";
     private static final char[] CHAR_SET_FOR_TAN = "ABCDEFGHJKLMNPQRSTUVWXYZ23456789".toCharArray();
+    /**
+     * One generator per thread, a new SecureRandom per TAN may block on entropy and a shared one is contended.
+     */
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(SecureRandom::new);
 
     private String rawTan;
     private String hashedTan;
@@ -30,7 +34,7 @@ public final class Tan {
     }
 
     private String generateNewTan() {
-        SecureRandom random = new SecureRandom();
+        SecureRandom random = RANDOM.get();
         long rnd = random.nextLong();
         int radixLen = CHAR_SET_FOR_TAN.length;
         StringBuilder tan = new StringBuilder();
@@ -0,0 +1,137 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.issuance.service;
+
+import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Source of new TANs.
+ * If issuance.tanPool.enabled is set, a background thread keeps a bounded pool of TANs with their hashes
+ * filled and request threads only take one out. When the pool is empty the TAN is generated inline.
+ */
+@Slf4j
+@Service
+public class TanService {
+    private final IssuanceConfigProperties issuanceConfigProperties;
+    private final Timer createTimer;
+    private final Counter refillCounter;
+    private final Counter missCounter;
+    private final BlockingQueue<Tan> pool;
+    private Thread refillThread;
+
+    /**
+     * Constructor.
+     *
+     * @param issuanceConfigProperties config
+     * @param meterRegistry registry for TAN and pool metrics
+     */
+    public TanService(IssuanceConfigProperties issuanceConfigProperties, MeterRegistry meterRegistry) {
+        this.issuanceConfigProperties = issuanceConfigProperties;
+        createTimer = meterRegistry.timer("issuance.tan.create");
+        IssuanceConfigProperties.TanPool config = issuanceConfigProperties.getTanPool();
+        if (config.isEnabled()) {
+            pool = new ArrayBlockingQueue<>(Math.max(1, config.getSize()));
+            meterRegistry.gauge("issuance.tan.pool.size", pool, BlockingQueue::size);
+        } else {
+            pool = null;
+        }
+        refillCounter = meterRegistry.counter("issuance.tan.pool.refilled");
+        missCounter = meterRegistry.counter("issuance.tan.pool.miss");
+    }
+
+    /**
+     * Start refilling the pool.
+     */
+    @PostConstruct
+    public void start() {
+        if (pool == null) {
+            return;
+        }
+        refillThread = new Thread(this::refill, "tan-pool-refill");
+        refillThread.setDaemon(true);
+        refillThread.start();
+        log.info("TAN pool with size {} started", issuanceConfigProperties.getTanPool().getSize());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (refillThread != null) {
+            refillThread.interrupt();
+        }
+    }
+
+    /**
+     * Get a new TAN.
+     *
+     * @return TAN with hash
+     */
+    public Tan createTan() {
+        if (pool != null) {
+            Tan tan = pool.poll();
+            if (tan != null) {
+                return tan;
+            }
+            missCounter.increment();
+        }
+        return createTimer.record(Tan::create);
+    }
+
+    /**
+     * Get many new TANs, taken from the pool as far as it has TANs.
+     *
+     * @param count number of TANs
+     * @return TANs with hash
+     */
+    public List<Tan> createTans(int count) {
+        List<Tan> tans = new ArrayList<>(count);
+        if (pool != null) {
+            pool.drainTo(tans, count);
+            missCounter.increment(count - tans.size());
+        }
+        while (tans.size() < count) {
+            tans.add(createTimer.record(Tan::create));
+        }
+        return tans;
+    }
+
+    private void refill() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Tan tan = createTimer.record(Tan::create);
+                pool.put(tan);
+                refillCounter.increment();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.issuance.service;
+
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.RSAKey;
+import eu.europa.ec.dgc.issuance.utils.HashUtil;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.InvalidKeyException;
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import org.bouncycastle.asn1.x9.X9ECParameters;
+import org.bouncycastle.crypto.ec.CustomNamedCurves;
+import org.bouncycastle.crypto.params.ECDomainParameters;
+import org.bouncycastle.crypto.params.ECPublicKeyParameters;
+import org.bouncycastle.crypto.signers.ECDSASigner;
+import org.bouncycastle.crypto.signers.StandardDSAEncoding;
+import org.springframework.stereotype.Component;
+
+/**
+ * Parsing of wallet public keys and verification of claim signatures.
+ * The key of a claim is parsed once into a {@link ClaimKey} that is used for signature verification and the JWK.
+ * KeyFactory and Signature instances are kept per thread and algorithm. SHA256withECDSA signatures of P-256 keys
+ * are verified with the BouncyCastle P-256 curve implementation, whose precomputed generator tables are
+ * shared by all verifications.
+ */
+@Component
+public class WalletKeyService {
+    private static final int MAX_ALGORITHMS = 16;
+    private static final String ECDSA_P256_ALGORITHM = "SHA256withECDSA";
+
+    private final ThreadLocal<Map<String, KeyFactory>> keyFactories = ThreadLocal.withInitial(HashMap::new);
+    private final ThreadLocal<Map<String, Signature>> signatures = ThreadLocal.withInitial(HashMap::new);
+    private final ECDomainParameters p256;
+
+    /**
+     * Constructor.
+     */
+    public WalletKeyService() {
+        X9ECParameters x9 = CustomNamedCurves.getByName("secp256r1");
+        p256 = new ECDomainParameters(x9.getCurve(), x9.getG(), x9.getN(), x9.getH(), x9.getSeed());
+    }
+
+    /**
+     * Parse the public key of a claim.
+     *
+     * @param publicKeyClaim type and Base64 encoded X.509 public key
+     * @return parsed key
+     */
+    public ClaimKey parse(eu.europa.ec.dgc.issuance.restapi.dto.PublicKey publicKeyClaim) {
+        byte[] keyBytes = Base64.getDecoder().decode(publicKeyClaim.getValue());
+        KeyFactory kf = cached(keyFactories.get(), publicKeyClaim.getType(), KeyFactory::getInstance,
+            "key type not supported: '" + publicKeyClaim.getType() + "', try RSA or EC");
+        try {
+            return new ClaimKey(kf.generatePublic(new X509EncodedKeySpec(keyBytes)));
+        } catch (InvalidKeySpecException e) {
+            throw new WrongRequest("invalid key");
+        }
+    }
+
+    /**
+     * Verify a claim signature.
+     *
+     * @param claimKey parsed public key
+     * @param sigAlg JCA signature algorithm
+     * @param data signed data
+     * @param signatureBytes signature
+     * @return true if the signature is valid
+     */
+    public boolean verify(ClaimKey claimKey, String sigAlg, byte[] data, byte[] signatureBytes) {
+        if (ECDSA_P256_ALGORITHM.equalsIgnoreCase(sigAlg) && claimKey.isP256()) {
+            return verifyEcdsaP256(claimKey, data, signatureBytes);
+        }
+        Signature signature = cached(signatures.get(), sigAlg, Signature::getInstance,
+            "signature algorithm not supported: '" + sigAlg + "'");
+        try {
+            signature.initVerify(claimKey.getPublicKey());
+            signature.update(data);
+            return signature.verify(signatureBytes);
+        } catch (InvalidKeyException e) {
+            throw new WrongRequest("invalid key for signature");
+        } catch (SignatureException e) {
+            throw new WrongRequest("can not validity signature", e);
+        }
+    }
+
+    private boolean verifyEcdsaP256(ClaimKey claimKey, byte[] data, byte[] signatureBytes) {
+        ECPublicKeyParameters keyParameters;
+        BigInteger[] rs;
+        try {
+            ECPublicKey ecPublicKey = (ECPublicKey) claimKey.getPublicKey();
+            keyParameters = new ECPublicKeyParameters(p256.getCurve().createPoint(
+                ecPublicKey.getW().getAffineX(), ecPublicKey.getW().getAffineY()), p256);
+        } catch (IllegalArgumentException e) {
+            throw new WrongRequest("invalid key for signature");
+        }
+        try {
+            rs = StandardDSAEncoding.INSTANCE.decode(p256.getN(), signatureBytes);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new WrongRequest("can not validity signature", e);
+        }
+        ECDSASigner verifier = new ECDSASigner();
+        verifier.init(false, keyParameters);
+        return verifier.verifySignature(HashUtil.sha256(data), rs[0], rs[1]);
+    }
+
+    private static <T> T cached(Map<String, T> cache, String algorithm, JcaFactory<T> factory, String error) {
+        T instance = cache.get(algorithm);
+        if (instance == null) {
+            try {
+                instance = factory.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new WrongRequest(error);
+            }
+            if (cache.size() >= MAX_ALGORITHMS) {
+                cache.clear();
+            }
+            cache.put(algorithm, instance);
+        }
+        return instance;
+    }
+
+    @FunctionalInterface
+    private interface JcaFactory<T> {
+        T getInstance(String algorithm) throws NoSuchAlgorithmException;
+    }
+
+    /**
+     * Public key of a claim, parsed once per claim.
+     */
+    public static class ClaimKey {
+        private final PublicKey publicKey;
+        private final boolean p256;
+
+        ClaimKey(PublicKey publicKey) {
+            this.publicKey = publicKey;
+            this.p256 = publicKey instanceof ECPublicKey
+                && Curve.P_256.equals(Curve.forECParameterSpec(((ECPublicKey) publicKey).getParams()));
+        }
+
+        public PublicKey getPublicKey() {
+            return publicKey;
+        }
+
+        boolean isP256() {
+            return p256;
+        }
+
+        /**
+         * Convert the key to JWK.
+         *
+         * @return JWK as JSON
+         */
+        public String toJwk() {
+            if (publicKey instanceof RSAPublicKey) {
+                return new RSAKey.Builder((RSAPublicKey) publicKey).build().toJSONString();
+            } else if (publicKey instanceof ECPublicKey) {
+                ECPublicKey ecPublicKey = (ECPublicKey) publicKey;
+                Curve curve = Curve.forECParameterSpec(ecPublicKey.getParams());
+                return new ECKey.Builder(curve, ecPublicKey).build().toJSONString();
+            } else {
+                throw new WrongRequest("unsupported key type");
+            }
+        }
+    }
+}
@@ -18,6 +18,8 @@ import java.security.UnrecoverableEntryException;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.HashMap;
+import java.util.Map;
 import javax.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -26,7 +28,7 @@ import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
 @Component("issuerKeyProvider")
-@Profile("!btp")
+@Profile("!btp & !pkcs11")
 @Slf4j
 @RequiredArgsConstructor
 public class CertificatePrivateKeyProviderImpl implements CertificatePrivateKeyProvider {
@@ -34,6 +36,7 @@ public class CertificatePrivateKeyProviderImpl implements CertificatePrivateKeyP
     private final IssuanceConfigProperties issuanceConfigProperties;
     private PublicKey publicKey;
     private PrivateKey privateKey;
+    private final Map<String, KeyStore.PrivateKeyEntry> signingKeys = new HashMap<>();
 
     /**
      * PostConstruct method to load KeyStore for issuing certificates.
@@ -69,6 +72,20 @@ public class CertificatePrivateKeyProviderImpl implements CertificatePrivateKeyP
             privateKey = privateKeyEntry.getPrivateKey();
             CertificateUtils certificateUtils = new CertificateUtils();
             String kidBase64 = certificateUtils.getCertKid((X509Certificate) cert);
+            IssuanceConfigProperties.SigningKeys signingKeyConfig = issuanceConfigProperties.getSigningKeys();
+            loadSigningKeys(keyStore, keyPassword, signingKeyConfig.getAliases());
+            loadSigningKeys(keyStore, keyPassword, signingKeyConfig.getRetiredAliases());
+        }
+    }
+
+    private void loadSigningKeys(KeyStore keyStore, KeyStore.PasswordProtection keyPassword, Iterable<String> aliases)
+        throws KeyStoreException, NoSuchAlgorithmException, UnrecoverableEntryException {
+        for (String alias : aliases) {
+            KeyStore.Entry entry = keyStore.getEntry(alias, keyPassword);
+            if (!(entry instanceof KeyStore.PrivateKeyEntry)) {
+                throw new IllegalArgumentException("signing key " + alias + " not found in key store");
+            }
+            signingKeys.put(alias, (KeyStore.PrivateKeyEntry) entry);
         }
     }
 
@@ -77,8 +94,20 @@ public class CertificatePrivateKeyProviderImpl implements CertificatePrivateKeyP
         return cert;
     }
 
+    @Override
+    public Certificate getCertificate(String alias) {
+        KeyStore.PrivateKeyEntry entry = signingKeys.get(alias);
+        return entry != null ? entry.getCertificate() : null;
+    }
+
     @Override
     public PrivateKey getPrivateKey() {
         return privateKey;
     }
+
+    @Override
+    public PrivateKey getPrivateKey(String alias) {
+        KeyStore.PrivateKeyEntry entry = signingKeys.get(alias);
+        return entry != null ? entry.getPrivateKey() : null;
+    }
 }
@@ -0,0 +1,121 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.issuance.service.impl;
+
+import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
+import eu.europa.ec.dgc.issuance.utils.HashUtil;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.PublicKey;
+import java.util.Arrays;
+import lombok.RequiredArgsConstructor;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.engines.RSAEngine;
+import org.bouncycastle.crypto.params.AsymmetricKeyParameter;
+import org.bouncycastle.crypto.signers.ECDSASigner;
+import org.bouncycastle.crypto.signers.PSSSigner;
+import org.bouncycastle.crypto.util.PublicKeyFactory;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Health of the PKCS#11 token.
+ * A test hash is signed with the issuer key and verified with the certificate, so a lost connection, a locked
+ * token or a key that does not match the certificate is reported as DOWN. The test signature is repeated at most
+ * once per issuance.pkcs11.healthCheckInterval, probes in between get the last result. The test signature only
+ * runs on a free session, when all sessions are busy signing the last result is reported, so a busy token is
+ * not reported as DOWN. Do not add this indicator to the liveness group, a lost token needs no restart.
+ */
+@Component
+@Profile("pkcs11")
+@RequiredArgsConstructor
+public class Pkcs11HealthIndicator implements HealthIndicator {
+    private static final byte[] TEST_HASH = HashUtil.sha256("issuance pkcs11 health check"
+        .getBytes(StandardCharsets.UTF_8));
+
+    private final Pkcs11KeyProvider keyProvider;
+    private final Pkcs11SigningService signingService;
+    private final IssuanceConfigProperties issuanceConfigProperties;
+    private volatile Health lastCheck;
+    private volatile long lastCheckNanos;
+
+    @Override
+    public Health health() {
+        Health check = lastCheck;
+        long now = System.nanoTime();
+        if (check == null
+            || now - lastCheckNanos > issuanceConfigProperties.getPkcs11().getHealthCheckInterval().toNanos()) {
+            Health tested = testSignature();
+            if (tested != null) {
+                check = tested;
+                lastCheck = check;
+                lastCheckNanos = now;
+            } else if (check == null) {
+                check = Health.unknown().withDetail("error", "all sessions busy, no test signature yet").build();
+            }
+        }
+        return Health.status(check.getStatus())
+            .withDetails(check.getDetails())
+            .withDetail("sessions", signingService.getMaxSessions())
+            .withDetail("availableSessions", signingService.getAvailableSessions())
+            .build();
+    }
+
+    /**
+     * Sign and verify the test hash.
+     *
+     * @return health or null if all sessions are busy
+     */
+    private Health testSignature() {
+        try {
+            byte[] signature = signingService.signHashIfIdle(TEST_HASH, keyProvider.getPrivateKey());
+            if (signature == null) {
+                return null;
+            }
+            if (verify(keyProvider.getCertificate().getPublicKey(), signature)) {
+                return Health.up().build();
+            }
+            return Health.down().withDetail("error", "test signature does not match the certificate").build();
+        } catch (RuntimeException | IOException e) {
+            return Health.down(e).build();
+        }
+    }
+
+    private static boolean verify(PublicKey publicKey, byte[] signature) throws IOException {
+        AsymmetricKeyParameter keyParameter = PublicKeyFactory.createKey(publicKey.getEncoded());
+        if ("RSA".equals(publicKey.getAlgorithm())) {
+            PSSSigner pssSigner = new PSSSigner(new RSAEngine(), new CopyDigest(), new SHA256Digest(), 32,
+                (byte) 0xBC);
+            pssSigner.init(false, keyParameter);
+            pssSigner.update(TEST_HASH, 0, TEST_HASH.length);
+            return pssSigner.verifySignature(signature);
+        }
+        int half = signature.length / 2;
+        ECDSASigner ecdsaSigner = new ECDSASigner();
+        ecdsaSigner.init(false, keyParameter);
+        return ecdsaSigner.verifySignature(TEST_HASH, new BigInteger(1, Arrays.copyOfRange(signature, 0, half)),
+            new BigInteger(1, Arrays.copyOfRange(signature, half, signature.length)));
+    }
+}
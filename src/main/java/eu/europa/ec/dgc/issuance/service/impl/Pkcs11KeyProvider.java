@@ -0,0 +1,151 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.issuance.service.impl;
+
+import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
+import eu.europa.ec.dgc.issuance.service.CertificatePrivateKeyProvider;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.PublicKey;
+import java.security.Security;
+import java.security.cert.Certificate;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Issuer key stored in a PKCS#11 token (HSM or SoftHSM).
+ * The private key never leaves the token, {@link #getPrivateKey()} returns a handle that can only be used
+ * with the PKCS#11 provider, see {@link Pkcs11SigningService}.
+ */
+@Component("issuerKeyProvider")
+@Profile("pkcs11")
+@Slf4j
+@RequiredArgsConstructor
+public class Pkcs11KeyProvider implements CertificatePrivateKeyProvider {
+    private final IssuanceConfigProperties issuanceConfigProperties;
+    @Getter
+    private Provider provider;
+    private Certificate cert;
+    private PrivateKey privateKey;
+    private final Map<String, Certificate> signingCerts = new HashMap<>();
+    private final Map<String, PrivateKey> signingKeys = new HashMap<>();
+
+    /**
+     * Configure the PKCS#11 provider and load key and certificate from the token.
+     */
+    @PostConstruct
+    public void loadKey() throws GeneralSecurityException, IOException {
+        IssuanceConfigProperties.Pkcs11 config = issuanceConfigProperties.getPkcs11();
+        if (config.getLibrary() == null || config.getLibrary().isEmpty()) {
+            throw new IllegalArgumentException("PKCS#11 library not configured (property: issuance.pkcs11.library)");
+        }
+        Security.addProvider(new BouncyCastleProvider());
+        provider = Security.getProvider("SunPKCS11").configure(providerConfig(config));
+        // registered, so JCA users of the key (hcert-kotlin COSE signing) find the provider by delayed selection
+        Security.addProvider(provider);
+
+        KeyStore keyStore = KeyStore.getInstance("PKCS11", provider);
+        keyStore.load(null, config.getPin() != null ? config.getPin().toCharArray() : null);
+        String alias = issuanceConfigProperties.getCertAlias();
+        Key key = keyStore.getKey(alias, null);
+        cert = keyStore.getCertificate(alias);
+        if (!(key instanceof PrivateKey) || cert == null) {
+            throw new IllegalArgumentException("private key and certificate " + alias + " not found in PKCS#11 token");
+        }
+        privateKey = (PrivateKey) key;
+        log.info("issuer key {} loaded from PKCS#11 library {}", alias, config.getLibrary());
+        loadSigningKeys(keyStore, issuanceConfigProperties.getSigningKeys().getAliases());
+        loadSigningKeys(keyStore, issuanceConfigProperties.getSigningKeys().getRetiredAliases());
+    }
+
+    private void loadSigningKeys(KeyStore keyStore, Iterable<String> aliases) throws GeneralSecurityException {
+        for (String alias : aliases) {
+            Key key = keyStore.getKey(alias, null);
+            Certificate signingCert = keyStore.getCertificate(alias);
+            if (!(key instanceof PrivateKey) || signingCert == null) {
+                throw new IllegalArgumentException("signing key " + alias + " not found in PKCS#11 token");
+            }
+            signingKeys.put(alias, (PrivateKey) key);
+            signingCerts.put(alias, signingCert);
+        }
+    }
+
+    /**
+     * SunPKCS11 configuration, the leading -- marks inline configuration instead of a file name.
+     */
+    static String providerConfig(IssuanceConfigProperties.Pkcs11 config) {
+        StringBuilder providerConfig = new StringBuilder("--name = issuance\n")
+            .append("library = ").append(config.getLibrary()).append('\n');
+        if (config.getSlot() != null) {
+            providerConfig.append("slot = ").append(config.getSlot()).append('\n');
+        } else {
+            providerConfig.append("slotListIndex = ").append(config.getSlotListIndex()).append('\n');
+        }
+        return providerConfig.toString();
+    }
+
+    @Override
+    public Certificate getCertificate() {
+        return cert;
+    }
+
+    @Override
+    public Certificate getCertificate(String alias) {
+        return signingCerts.get(alias);
+    }
+
+    @Override
+    public PrivateKey getPrivateKey() {
+        return privateKey;
+    }
+
+    @Override
+    public PrivateKey getPrivateKey(String alias) {
+        return signingKeys.get(alias);
+    }
+
+    /**
+     * Public key of a key of the token, from the certificate stored with it.
+     *
+     * @param key issuer key or one of the further signing keys
+     * @return public key
+     */
+    public PublicKey getPublicKey(PrivateKey key) {
+        for (Map.Entry<String, PrivateKey> signingKey : signingKeys.entrySet()) {
+            if (signingKey.getValue().equals(key)) {
+                return signingCerts.get(signingKey.getKey()).getPublicKey();
+            }
+        }
+        return cert.getPublicKey();
+    }
+}
@@ -0,0 +1,286 @@
+/*-
+ * ---license-start
+ * EU Digital Green Certificate Issuance Service / dgca-issuance-service
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.issuance.service.impl;
+
+import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
+import eu.europa.ec.dgc.issuance.service.SigningService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.PublicKey;
+import java.security.ProviderException;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.interfaces.ECKey;
+import java.security.interfaces.RSAKey;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import javax.crypto.Cipher;
+import org.bouncycastle.crypto.AsymmetricBlockCipher;
+import org.bouncycastle.crypto.CipherParameters;
+import org.bouncycastle.crypto.CryptoException;
+import org.bouncycastle.crypto.InvalidCipherTextException;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.params.ParametersWithRandom;
+import org.bouncycastle.crypto.params.RSAKeyParameters;
+import org.bouncycastle.crypto.signers.PSSSigner;
+import org.bouncycastle.crypto.signers.StandardDSAEncoding;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Signing with a key in a PKCS#11 token.
+ * HSM signing is bound by the latency of the device, so signatures run in parallel on a bounded number of sessions.
+ * A session holds the JCA objects of the provider, which keep their PKCS#11 session only while signing.
+ * A session that fails with a provider error is dropped and replaced by a new one on the next signature,
+ * so a reconnected token is used again without restart.
+ * The token only computes the raw operation: ECDSA on the given hash (CKM_ECDSA) and the RSA private key
+ * operation (CKM_RSA_X_509) on the RSA-PSS block that is encoded here, like {@link SigningServiceImpl}.
+ */
+@Component
+@Profile("pkcs11")
+public class Pkcs11SigningService implements SigningService {
+    private static final int EC_COORDINATE_LENGTH = 32;
+    private static final int PSS_SALT_LENGTH = 32;
+    private static final byte PSS_TRAILER = (byte) 0xBC;
+
+    private final Provider provider;
+    private final Function<PrivateKey, PublicKey> publicKeys;
+    private final int maxSessions;
+    private final Semaphore permits;
+    private final Queue<Session> idleSessions = new ConcurrentLinkedQueue<>();
+    private final long acquireTimeoutMillis;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final Timer signTimer;
+
+    /**
+     * Constructor.
+     *
+     * @param keyProvider provider of the token
+     * @param issuanceConfigProperties session pool config
+     * @param meterRegistry registry for signing and session metrics
+     */
+    @Autowired
+    public Pkcs11SigningService(Pkcs11KeyProvider keyProvider, IssuanceConfigProperties issuanceConfigProperties,
+                                MeterRegistry meterRegistry) {
+        this(keyProvider.getProvider(), keyProvider::getPublicKey,
+            issuanceConfigProperties.getPkcs11().getSessions(),
+            issuanceConfigProperties.getPkcs11().getAcquireTimeout(), meterRegistry);
+    }
+
+    Pkcs11SigningService(Provider provider, Function<PrivateKey, PublicKey> publicKeys, int sessions,
+                         Duration acquireTimeout, MeterRegistry meterRegistry) {
+        this.provider = provider;
+        this.publicKeys = publicKeys;
+        maxSessions = Math.max(1, sessions);
+        permits = new Semaphore(maxSessions, true);
+        acquireTimeoutMillis = acquireTimeout.toMillis();
+        signTimer = meterRegistry.timer("issuance.sign", "keyType", "PKCS11");
+        meterRegistry.gauge("issuance.pkcs11.sessions.busy", permits, p -> maxSessions - p.availablePermits());
+    }
+
+    @Override
+    public byte[] signHash(byte[] hashBytes, PrivateKey privateKey) {
+        Timer.Sample sample = Timer.start();
+        acquire();
+        return signWithPermit(hashBytes, privateKey, sample);
+    }
+
+    /**
+     * Sign only if a session is free right now, without waiting behind running signatures.
+     * Used by the health check, so a busy token is not reported as DOWN.
+     *
+     * @param hashBytes hash to sign
+     * @param privateKey key in the token
+     * @return signature or null if all sessions are busy
+     */
+    public byte[] signHashIfIdle(byte[] hashBytes, PrivateKey privateKey) {
+        Timer.Sample sample = Timer.start();
+        if (!permits.tryAcquire()) {
+            return null;
+        }
+        return signWithPermit(hashBytes, privateKey, sample);
+    }
+
+    private byte[] signWithPermit(byte[] hashBytes, PrivateKey privateKey, Timer.Sample sample) {
+        Session session = idleSessions.poll();
+        boolean healthy = false;
+        try {
+            if (session == null) {
+                session = new Session();
+            }
+            byte[] signature = session.sign(hashBytes, privateKey);
+            healthy = true;
+            return signature;
+        } catch (GeneralSecurityException | CryptoException | ProviderException e) {
+            throw new IllegalArgumentException("error during signing with PKCS#11 key", e);
+        } finally {
+            if (healthy) {
+                idleSessions.offer(session);
+            }
+            permits.release();
+            sample.stop(signTimer);
+        }
+    }
+
+    /**
+     * Number of sessions that are currently not signing.
+     *
+     * @return free sessions
+     */
+    public int getAvailableSessions() {
+        return permits.availablePermits();
+    }
+
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    private void acquire() {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("no PKCS#11 session available within " + acquireTimeoutMillis + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for a PKCS#11 session", e);
+        }
+    }
+
+    /**
+     * Key parameters of a token key. Sensitive keys of some providers do not expose them,
+     * then they are taken from the public key of the certificate.
+     */
+    private <T> T keyParameters(PrivateKey privateKey, Class<T> type) {
+        if (type.isInstance(privateKey)) {
+            return type.cast(privateKey);
+        }
+        return type.cast(publicKeys.apply(privateKey));
+    }
+
+    private static byte[] toConcat(BigInteger r, BigInteger s) {
+        byte[] sig = new byte[2 * EC_COORDINATE_LENGTH];
+        copyUnsigned(r, sig, 0);
+        copyUnsigned(s, sig, EC_COORDINATE_LENGTH);
+        return sig;
+    }
+
+    private static void copyUnsigned(BigInteger value, byte[] target, int offset) {
+        byte[] bytes = value.toByteArray();
+        int skip = Math.max(0, bytes.length - EC_COORDINATE_LENGTH);
+        int length = bytes.length - skip;
+        System.arraycopy(bytes, skip, target, offset + EC_COORDINATE_LENGTH - length, length);
+    }
+
+    /**
+     * JCA objects of one PKCS#11 session, used by one thread at a time.
+     */
+    private final class Session {
+        private Signature ecdsa;
+        private Cipher rawRsa;
+
+        byte[] sign(byte[] hash, PrivateKey privateKey) throws GeneralSecurityException, CryptoException {
+            if ("RSA".equals(privateKey.getAlgorithm())) {
+                return signRsapss(hash, privateKey);
+            } else if ("EC".equals(privateKey.getAlgorithm())) {
+                return signEc(hash, privateKey);
+            }
+            throw new IllegalArgumentException("unsupported key type " + privateKey.getAlgorithm());
+        }
+
+        private byte[] signEc(byte[] hash, PrivateKey privateKey) throws GeneralSecurityException {
+            if (ecdsa == null) {
+                ecdsa = provider != null ? Signature.getInstance("NONEwithECDSA", provider)
+                    : Signature.getInstance("NONEwithECDSA");
+            }
+            ecdsa.initSign(privateKey);
+            ecdsa.update(hash);
+            BigInteger order = keyParameters(privateKey, ECKey.class).getParams().getOrder();
+            BigInteger[] rs = StandardDSAEncoding.INSTANCE.decode(order, ecdsa.sign());
+            return toConcat(rs[0], rs[1]);
+        }
+
+        private byte[] signRsapss(byte[] hash, PrivateKey privateKey) throws GeneralSecurityException,
+            CryptoException {
+            if (rawRsa == null) {
+                rawRsa = provider != null ? Cipher.getInstance("RSA/ECB/NoPadding", provider)
+                    : Cipher.getInstance("RSA/ECB/NoPadding");
+            }
+            BigInteger modulus = keyParameters(privateKey, RSAKey.class).getModulus();
+            PSSSigner pssSigner = new PSSSigner(new TokenRsaEngine(rawRsa, privateKey, modulus), new CopyDigest(),
+                new SHA256Digest(), PSS_SALT_LENGTH, PSS_TRAILER);
+            // only the modulus is used by the PSS encoding, the private operation runs in the token
+            pssSigner.init(true, new ParametersWithRandom(new RSAKeyParameters(true, modulus, BigInteger.ONE),
+                secureRandom));
+            pssSigner.update(hash, 0, hash.length);
+            return pssSigner.generateSignature();
+        }
+    }
+
+    /**
+     * RSA engine that computes the raw private key operation with a JCA cipher of the token.
+     */
+    private static final class TokenRsaEngine implements AsymmetricBlockCipher {
+        private final Cipher cipher;
+        private final PrivateKey privateKey;
+        private final int blockSize;
+
+        TokenRsaEngine(Cipher cipher, PrivateKey privateKey, BigInteger modulus) {
+            this.cipher = cipher;
+            this.privateKey = privateKey;
+            blockSize = (modulus.bitLength() + 7) / 8;
+        }
+
+        @Override
+        public void init(boolean forEncryption, CipherParameters param) {
+            // the key is held by the token
+        }
+
+        @Override
+        public int getInputBlockSize() {
+            return blockSize;
+        }
+
+        @Override
+        public int getOutputBlockSize() {
+            return blockSize;
+        }
+
+        @Override
+        public byte[] processBlock(byte[] in, int inOff, int len) throws InvalidCipherTextException {
+            try {
+                cipher.init(Cipher.ENCRYPT_MODE, privateKey);
+                return cipher.doFinal(in, inOff, len);
+            } catch (GeneralSecurityException e) {
+                throw new InvalidCipherTextException("RSA private key operation failed", e);
+            }
+        }
+    }
+}
@@ -1,32 +1,74 @@
 package eu.europa.ec.dgc.issuance.service.impl;
 
 import eu.europa.ec.dgc.issuance.service.SigningService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import java.math.BigInteger;
 import java.security.PrivateKey;
+import java.security.SecureRandom;
 import java.security.interfaces.RSAPrivateCrtKey;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import org.bouncycastle.crypto.CryptoException;
 import org.bouncycastle.crypto.Digest;
 import org.bouncycastle.crypto.digests.SHA256Digest;
 import org.bouncycastle.crypto.engines.RSABlindedEngine;
 import org.bouncycastle.crypto.params.ECDomainParameters;
 import org.bouncycastle.crypto.params.ECPrivateKeyParameters;
+import org.bouncycastle.crypto.params.ParametersWithRandom;
 import org.bouncycastle.crypto.params.RSAPrivateCrtKeyParameters;
 import org.bouncycastle.crypto.signers.ECDSASigner;
 import org.bouncycastle.crypto.signers.PSSSigner;
 import org.bouncycastle.jcajce.provider.asymmetric.util.EC5Util;
 import org.bouncycastle.jce.spec.ECParameterSpec;
+import org.bouncycastle.math.ec.FixedPointUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
 @Component
+@Profile("!pkcs11")
 public class SigningServiceImpl implements SigningService {
+    /**
+     * Upper bound of prepared keys. Normally there is only the one issuer key,
+     * the bound only protects against key providers returning a new key object on every call.
+     */
+    private static final int MAX_CACHED_KEYS = 16;
+
+    private final Map<PrivateKey, RSAPrivateCrtKeyParameters> rsaKeyCache = new ConcurrentHashMap<>();
+    private final Map<PrivateKey, EcSigner> ecSignerCache = new ConcurrentHashMap<>();
+    private final ThreadLocal<SecureRandom> secureRandom = ThreadLocal.withInitial(SecureRandom::new);
+    private final Timer rsaTimer;
+    private final Timer ecTimer;
+
+    public SigningServiceImpl() {
+        this(Metrics.globalRegistry);
+    }
+
+    /**
+     * Constructor with signing time metrics per key type.
+     *
+     * @param meterRegistry registry for the issuance.sign timers
+     */
+    @Autowired
+    public SigningServiceImpl(MeterRegistry meterRegistry) {
+        rsaTimer = meterRegistry.timer("issuance.sign", "keyType", "RSA");
+        ecTimer = meterRegistry.timer("issuance.sign", "keyType", "EC");
+    }
+
     @Override
     public byte[] signHash(byte[] hashBytes, PrivateKey privateKey) {
+        Timer.Sample sample = Timer.start();
         byte[] signature;
         try {
             if (privateKey instanceof RSAPrivateCrtKey) {
                 signature = signRsapss(hashBytes, privateKey);
+                sample.stop(rsaTimer);
             } else {
                 signature = signEc(hashBytes, privateKey);
+                sample.stop(ecTimer);
             }
         } catch (CryptoException e) {
             throw new IllegalArgumentException("error during signing ", e);
@@ -35,29 +77,21 @@ public class SigningServiceImpl implements SigningService {
     }
 
     private byte[] signRsapss(byte[] hashBytes, PrivateKey privateKey) throws CryptoException {
+        // PSSSigner and CopyDigest are stateful for exactly one signature, so only the key parameters are cached
         Digest contentDigest = new CopyDigest();
         Digest mgfDigest = new SHA256Digest();
-        RSAPrivateCrtKey k = (RSAPrivateCrtKey) privateKey;
-        RSAPrivateCrtKeyParameters keyparam = new RSAPrivateCrtKeyParameters(k.getModulus(),
-            k.getPublicExponent(), k.getPrivateExponent(),
-            k.getPrimeP(), k.getPrimeQ(), k.getPrimeExponentP(), k.getPrimeExponentQ(), k.getCrtCoefficient());
-        RSABlindedEngine rsaBlindedEngine = new RSABlindedEngine();
-        rsaBlindedEngine.init(true, keyparam);
-        PSSSigner pssSigner = new PSSSigner(rsaBlindedEngine, contentDigest, mgfDigest, 32, (byte) (-68));
-        pssSigner.init(true, keyparam);
+        RSAPrivateCrtKeyParameters keyparam = cached(rsaKeyCache, privateKey,
+            SigningServiceImpl::toRsaKeyParameters);
+        PSSSigner pssSigner = new PSSSigner(new RSABlindedEngine(), contentDigest, mgfDigest, 32, (byte) (-68));
+        pssSigner.init(true, new ParametersWithRandom(keyparam, secureRandom.get()));
         pssSigner.update(hashBytes, 0, hashBytes.length);
         return pssSigner.generateSignature();
     }
 
     private byte[] signEc(byte[] hash, PrivateKey privateKey) {
-        java.security.interfaces.ECPrivateKey privKey = (java.security.interfaces.ECPrivateKey) privateKey;
-        ECParameterSpec s = EC5Util.convertSpec(privKey.getParams());
-        ECPrivateKeyParameters keyparam = new ECPrivateKeyParameters(
-            privKey.getS(),
-            new ECDomainParameters(s.getCurve(), s.getG(), s.getN(), s.getH(), s.getSeed()));
-        ECDSASigner ecdsaSigner = new ECDSASigner();
-        ecdsaSigner.init(true, keyparam);
-        BigInteger[] result3BI = ecdsaSigner.generateSignature(hash);
+        EcSigner ecSigner = cached(ecSignerCache, privateKey,
+            key -> new EcSigner((java.security.interfaces.ECPrivateKey) key));
+        BigInteger[] result3BI = ecSigner.get().generateSignature(hash);
         byte[] rvarArr = result3BI[0].toByteArray();
         byte[] svarArr = result3BI[1].toByteArray();
         // we need to convert it to 2*32 bytes array. This can 33 with leading 0 or shorter so padding is needed
@@ -69,4 +103,49 @@ public class SigningServiceImpl implements SigningService {
 
         return sig;
     }
+
+    private static <T> T cached(Map<PrivateKey, T> cache, PrivateKey privateKey,
+                                Function<PrivateKey, T> factory) {
+        T value = cache.get(privateKey);
+        if (value == null) {
+            if (cache.size() >= MAX_CACHED_KEYS) {
+                cache.clear();
+            }
+            value = cache.computeIfAbsent(privateKey, factory);
+        }
+        return value;
+    }
+
+    private static RSAPrivateCrtKeyParameters toRsaKeyParameters(PrivateKey privateKey) {
+        RSAPrivateCrtKey k = (RSAPrivateCrtKey) privateKey;
+        return new RSAPrivateCrtKeyParameters(k.getModulus(),
+            k.getPublicExponent(), k.getPrivateExponent(),
+            k.getPrimeP(), k.getPrimeQ(), k.getPrimeExponentP(), k.getPrimeExponentQ(), k.getCrtCoefficient());
+    }
+
+    /**
+     * Prepared EC key with one initialized {@link ECDSASigner} per thread.
+     * The domain parameters are built once, so the fixed point comb table of the generator
+     * (stored on the generator point instance) is computed once and reused by every signature.
+     */
+    private static final class EcSigner {
+        private final ThreadLocal<ECDSASigner> signer;
+
+        EcSigner(java.security.interfaces.ECPrivateKey privKey) {
+            ECParameterSpec s = EC5Util.convertSpec(privKey.getParams());
+            ECDomainParameters domainParameters =
+                new ECDomainParameters(s.getCurve(), s.getG(), s.getN(), s.getH(), s.getSeed());
+            FixedPointUtil.precompute(domainParameters.getG());
+            ECPrivateKeyParameters keyparam = new ECPrivateKeyParameters(privKey.getS(), domainParameters);
+            signer = ThreadLocal.withInitial(() -> {
+                ECDSASigner ecdsaSigner = new ECDSASigner();
+                ecdsaSigner.init(true, new ParametersWithRandom(keyparam, new SecureRandom()));
+                return ecdsaSigner;
+            });
+        }
+
+        ECDSASigner get() {
+            return signer.get();
+        }
+    }
 }
@@ -1,10 +1,25 @@
 package eu.europa.ec.dgc.issuance.utils;
 
-import java.math.BigInteger;
-import java.nio.ByteBuffer;
 import java.util.UUID;
 
 public class DgciUtil {
+    /**
+     * Radix of the encoding, digits 0-9 and A-Y.
+     */
+    public static final int RADIX = 10 + ('Z' - 'A');
+
+    /**
+     * Maximal length of an encoded UUID, 35^25 is greater than 2^128.
+     */
+    public static final int MAX_ENCODED_LENGTH = 25;
+
+    private static final char[] DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXY".toCharArray();
+    /**
+     * 35^6, the largest power of the radix below 2^31, so a remainder shifted by 32 bits still fits in a long.
+     */
+    private static final long CHUNK_DIVISOR = 1_838_265_625L;
+    private static final int CHUNK_DIGITS = 6;
+    private static final long LOW_32_BITS = 0xFFFF_FFFFL;
 
     /**
      * Encode UUID to charset of A-Z and 0-9.
@@ -13,12 +28,51 @@ public class DgciUtil {
      * @return the hashed UUID
      */
     public static String encodeDgci(UUID uuid) {
-        ByteBuffer bb = ByteBuffer.wrap(new byte[16]);
-        bb.putLong(uuid.getMostSignificantBits());
-        bb.putLong(uuid.getLeastSignificantBits());
-        BigInteger bint = new BigInteger(1, bb.array());
-        int radix = 10 + ('Z' - 'A');
-        return bint.toString(radix).toUpperCase();
+        char[] target = new char[MAX_ENCODED_LENGTH];
+        int start = encodeDgci(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), target,
+            MAX_ENCODED_LENGTH);
+        return new String(target, start, MAX_ENCODED_LENGTH - start);
     }
 
+    /**
+     * Encode the 128 bit unsigned value of a UUID in radix 35 with upper case digits without leading zeros,
+     * the same as {@code new BigInteger(1, bytes).toString(35).toUpperCase()} but without allocations.
+     * The digits are written right aligned, ending before the given end index.
+     *
+     * @param msb most significant bits of the UUID
+     * @param lsb least significant bits of the UUID
+     * @param target char array with at least {@link #MAX_ENCODED_LENGTH} chars before end
+     * @param end index after the last digit
+     * @return index of the first digit
+     */
+    public static int encodeDgci(long msb, long lsb, char[] target, int end) {
+        // four unsigned 32 bit limbs, most significant first
+        long limb0 = msb >>> 32;
+        long limb1 = msb & LOW_32_BITS;
+        long limb2 = lsb >>> 32;
+        long limb3 = lsb & LOW_32_BITS;
+        int pos = end;
+        boolean last;
+        do {
+            // long division of the 128 bit value by 35^6
+            long current = limb0;
+            limb0 = current / CHUNK_DIVISOR;
+            current = ((current % CHUNK_DIVISOR) << 32) | limb1;
+            limb1 = current / CHUNK_DIVISOR;
+            current = ((current % CHUNK_DIVISOR) << 32) | limb2;
+            limb2 = current / CHUNK_DIVISOR;
+            current = ((current % CHUNK_DIVISOR) << 32) | limb3;
+            limb3 = current / CHUNK_DIVISOR;
+            int remainder = (int) (current % CHUNK_DIVISOR);
+            last = (limb0 | limb1 | limb2 | limb3) == 0;
+            for (int i = 0; i < CHUNK_DIGITS && !(last && remainder == 0); i++) {
+                target[--pos] = DIGITS[remainder % RADIX];
+                remainder /= RADIX;
+            }
+        } while (!last);
+        if (pos == end) {
+            target[--pos] = DIGITS[0];
+        }
+        return pos;
+    }
 }
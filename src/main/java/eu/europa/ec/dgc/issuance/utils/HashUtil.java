@@ -6,20 +6,53 @@ import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
 
 public class HashUtil {
+    public static final int SHA256_LENGTH = 32;
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException(e);
+        }
+    });
 
     /**
      * Generates a SHA-256 hash and returns it as Base64 encoded string.
+     * The digest instance is reused per thread, digest() resets it after every hash.
      *
      * @param raw the raw input
      * @return the Base64 encode hash
      */
     public static String sha256Base64(String raw) {
+        final byte[] hashBytes = sha256(raw.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(hashBytes);
+    }
+
+    /**
+     * Generates a SHA-256 hash.
+     *
+     * @param raw the raw input
+     * @return the hash
+     */
+    public static byte[] sha256(byte[] raw) {
+        return SHA256.get().digest(raw);
+    }
+
+    /**
+     * Decodes a Base64 encoded SHA-256 hash.
+     *
+     * @param hash the Base64 encoded hash
+     * @return the hash or null if it is not a Base64 encoded SHA-256 hash
+     */
+    public static byte[] decodeSha256Base64(String hash) {
+        if (hash == null) {
+            return null;
+        }
         try {
-            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            final byte[] hashBytes = digest.digest(raw.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(hashBytes);
-        } catch (NoSuchAlgorithmException e) {
-            throw new IllegalArgumentException(e);
+            byte[] hashBytes = Base64.getDecoder().decode(hash);
+            return hashBytes.length == SHA256_LENGTH ? hashBytes : null;
+        } catch (IllegalArgumentException e) {
+            return null;
         }
     }
 
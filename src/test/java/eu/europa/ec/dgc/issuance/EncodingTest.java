@@ -23,8 +23,11 @@ package eu.europa.ec.dgc.issuance;
 import com.nimbusds.jose.util.Base64URL;
 import eu.europa.ec.dgc.issuance.utils.DgciUtil;
 import eu.europa.ec.dgc.issuance.utils.HashUtil;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.util.Random;
 import java.util.UUID;
 import org.junit.jupiter.api.Test;
 
@@ -53,6 +56,27 @@ class EncodingTest {
         assertEquals(TEST_DGCI_REP, dgciRep);
     }
 
+    @Test
+    void dgciEncodingSameAsBigInteger() {
+        Random random = new Random(42);
+        long[][] values = {{0, 0}, {0, 1}, {0, 34}, {0, 35}, {0, -1}, {-1, -1}, {Long.MIN_VALUE, 0}};
+        for (long[] value : values) {
+            assertEquals(encodeWithBigInteger(value[0], value[1]), DgciUtil.encodeDgci(new UUID(value[0], value[1])));
+        }
+        for (int i = 0; i < 10000; i++) {
+            UUID uuid = new UUID(random.nextLong(), random.nextLong());
+            assertEquals(encodeWithBigInteger(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()),
+                DgciUtil.encodeDgci(uuid));
+        }
+    }
+
+    private String encodeWithBigInteger(long msb, long lsb) {
+        ByteBuffer bb = ByteBuffer.wrap(new byte[16]);
+        bb.putLong(msb);
+        bb.putLong(lsb);
+        return new BigInteger(1, bb.array()).toString(35).toUpperCase();
+    }
+
     @Test
     void testBase64URL() throws Exception {
         String dgci= "URN:UVCI:V1:DE:NW513NLDH01JY3JCMU4M67WOHA";
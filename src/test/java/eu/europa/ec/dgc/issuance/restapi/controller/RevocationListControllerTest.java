@@ -0,0 +1,37 @@
+package eu.europa.ec.dgc.issuance.restapi.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class RevocationListControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void getRevocationList() throws Exception {
+        String etag = mockMvc.perform(get("/dgci/revocation-list"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        mockMvc.perform(get("/dgci/revocation-list").header(HttpHeaders.IF_NONE_MATCH, etag))
+            .andExpect(status().isNotModified());
+
+        byte[] header = mockMvc.perform(get("/dgci/revocation-list").header(HttpHeaders.RANGE, "bytes=0-3"))
+            .andExpect(status().isPartialContent())
+            .andReturn().getResponse().getContentAsByteArray();
+        assertArrayEquals(new byte[] {'D', 'R', 'L', '1'}, header);
+    }
+
+}
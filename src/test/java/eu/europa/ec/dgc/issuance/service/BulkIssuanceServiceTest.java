@@ -0,0 +1,123 @@
+package eu.europa.ec.dgc.issuance.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
+import eu.europa.ec.dgc.issuance.entity.DgciEntity;
+import eu.europa.ec.dgc.issuance.repository.DgciRepository;
+import eu.europa.ec.dgc.issuance.restapi.dto.EgdcCodeData;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class BulkIssuanceServiceTest {
+    @Autowired
+    BulkIssuanceService bulkIssuanceService;
+
+    @Autowired
+    DgciRepository dgciRepository;
+
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testBulkNdjson() throws Exception {
+        String ndjson = singleLine(SampleData.vaccination) + "\n"
+            + "{\"unknown\": 1}\n"
+            + "\n"
+            + singleLine(SampleData.testRat) + "\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bulkIssuanceService.createEdgcFromNdjson(
+            new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            JsonNode result = objectMapper.readTree(lines[i]);
+            assertEquals(i, result.get("index").asInt());
+            if (i == 1) {
+                assertNotNull(result.get("error"));
+                assertNull(result.get("dgci"));
+            } else {
+                assertNull(result.get("error"));
+                assertTrue(result.get("qrCode").asText().startsWith("HC1:"));
+                assertNotNull(result.get("tan"));
+                assertTrue(dgciRepository.findByDgci(result.get("dgci").asText()).isPresent());
+            }
+        }
+    }
+
+    @Test
+    void testBulkJsonArray() throws Exception {
+        String jsonArray = "[" + SampleData.vaccination + "," + SampleData.recovery + "]";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bulkIssuanceService.createEdgcFromJsonArray(
+            new ByteArrayInputStream(jsonArray.getBytes(StandardCharsets.UTF_8)), out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        JsonNode second = objectMapper.readTree(lines[1]);
+        assertNotEquals(first.get("dgci").asText(), second.get("dgci").asText());
+        assertEquals(1, second.get("index").asInt());
+    }
+
+    @Test
+    void testErrorWithoutMessage() throws Exception {
+        DgciService dgciService = Mockito.mock(DgciService.class);
+        Mockito.when(dgciService.prepareEdgc(Mockito.anyString())).thenThrow(new IllegalStateException());
+        BulkIssuanceService failingBulkService = new BulkIssuanceService(dgciService,
+            Mockito.mock(DgciRepository.class), Mockito.mock(DgciHashFilter.class), new IssuanceConfigProperties());
+        failingBulkService.startExecutor();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            failingBulkService.createEdgcFromNdjson(
+                new ByteArrayInputStream(singleLine(SampleData.vaccination).getBytes(StandardCharsets.UTF_8)), out);
+        } finally {
+            failingBulkService.stopExecutor();
+        }
+
+        JsonNode result = objectMapper.readTree(out.toString(StandardCharsets.UTF_8).trim());
+        assertEquals("IllegalStateException", result.get("error").asText());
+    }
+
+    @Test
+    void testOverloadedCertificateIsRetried() throws Exception {
+        DgciService dgciService = Mockito.mock(DgciService.class);
+        EgdcCodeData egdcCodeData = new EgdcCodeData();
+        egdcCodeData.setDgci("URN:UVCI:V1:DE:RETRIED");
+        egdcCodeData.setQrCode("HC1:retried");
+        SigningOverloaded overloaded = new SigningOverloaded("signing queue is full", Duration.ofSeconds(1));
+        Mockito.when(dgciService.prepareEdgc(Mockito.anyString()))
+            .thenThrow(overloaded, overloaded)
+            .thenReturn(new DgciService.PreparedEdgc(egdcCodeData, new DgciEntity()));
+        IssuanceConfigProperties issuanceConfigProperties = new IssuanceConfigProperties();
+        issuanceConfigProperties.getBulk().setOverloadBackoff(Duration.ofMillis(1));
+        BulkIssuanceService retryingBulkService = new BulkIssuanceService(dgciService,
+            Mockito.mock(DgciRepository.class), Mockito.mock(DgciHashFilter.class), issuanceConfigProperties);
+        retryingBulkService.startExecutor();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            retryingBulkService.createEdgcFromNdjson(
+                new ByteArrayInputStream(singleLine(SampleData.vaccination).getBytes(StandardCharsets.UTF_8)), out);
+        } finally {
+            retryingBulkService.stopExecutor();
+        }
+
+        JsonNode result = objectMapper.readTree(out.toString(StandardCharsets.UTF_8).trim());
+        assertNull(result.get("error"));
+        assertEquals("URN:UVCI:V1:DE:RETRIED", result.get("dgci").asText());
+        Mockito.verify(dgciService, Mockito.times(3)).prepareEdgc(Mockito.anyString());
+    }
+
+    private String singleLine(String json) throws Exception {
+        return objectMapper.readTree(json).toString();
+    }
+}
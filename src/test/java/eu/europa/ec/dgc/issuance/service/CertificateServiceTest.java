@@ -0,0 +1,158 @@
+package eu.europa.ec.dgc.issuance.service;
+
+import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
+import eu.europa.ec.dgc.issuance.service.impl.SigningServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CertificateServiceTest {
+    IssuanceConfigProperties issuanceConfigProperties = new IssuanceConfigProperties();
+    SigningExecutor signingExecutor;
+    KeyStore keyStore;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        keyStore = KeyStore.getInstance("JKS");
+        try (InputStream is = new FileInputStream("certs/test.jks")) {
+            keyStore.load(is, "dgca".toCharArray());
+        }
+        issuanceConfigProperties.setCertAlias("edgc_dev_ec");
+        issuanceConfigProperties.getSigningKeys().setAliases(List.of("dev_ec"));
+        issuanceConfigProperties.getSigningKeys().setRetiredAliases(List.of("edgc_dev_test"));
+        signingExecutor = new SigningExecutor(issuanceConfigProperties, new SimpleMeterRegistry());
+        signingExecutor.startExecutor();
+    }
+
+    @AfterEach
+    void stopExecutor() {
+        signingExecutor.stopExecutor();
+    }
+
+    @Test
+    void testRoundRobin() {
+        CertificateService certificateService = createCertificateService();
+
+        assertEquals(3, certificateService.getSigningKeys().size());
+        Set<String> selected = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            SigningKey signingKey = certificateService.selectSigningKey();
+            assertTrue(signingKey.isActive());
+            selected.add(signingKey.getAlias());
+        }
+        assertEquals(Set.of("edgc_dev_ec", "dev_ec"), selected);
+        assertNotEquals(certificateService.selectSigningKey().getAlias(),
+            certificateService.selectSigningKey().getAlias());
+    }
+
+    @Test
+    void testLeastLoaded() {
+        issuanceConfigProperties.getSigningKeys().setSelection(IssuanceConfigProperties.KeySelection.LEAST_LOADED);
+        CertificateService certificateService = createCertificateService();
+        SigningKey primaryKey = certificateService.getSigningKey(certificateService.getKidAsBase64());
+
+        for (int i = 0; i < 4; i++) {
+            SigningKey selected = primaryKey.use(certificateService::selectSigningKey);
+            assertEquals("dev_ec", selected.getAlias());
+        }
+        assertEquals(0, primaryKey.getInFlight());
+    }
+
+    @Test
+    void testReservationIgnoresLoad() {
+        issuanceConfigProperties.getSigningKeys().setSelection(IssuanceConfigProperties.KeySelection.LEAST_LOADED);
+        CertificateService certificateService = createCertificateService();
+        SigningKey primaryKey = certificateService.getSigningKey(certificateService.getKidAsBase64());
+
+        Set<String> selected = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            selected.add(primaryKey.use(certificateService::selectReservationKey).getAlias());
+        }
+        assertEquals(Set.of("edgc_dev_ec", "dev_ec"), selected);
+    }
+
+    @Test
+    void testSigningKeyByKid() {
+        CertificateService certificateService = createCertificateService();
+
+        assertEquals("edgc_dev_ec", certificateService.getSigningKey(null).getAlias());
+        for (SigningKey signingKey : certificateService.getSigningKeys()) {
+            assertSame(signingKey, certificateService.getSigningKey(signingKey.getKidBase64()));
+        }
+        SigningKey retired = certificateService.getSigningKeys().get(2);
+        assertEquals("edgc_dev_test", retired.getAlias());
+        assertFalse(retired.isActive());
+        assertThrows(DgciConflict.class, () -> certificateService.getSigningKey("AAAAAAAAAAA="));
+    }
+
+    @Test
+    void testSignHashesWithDifferentKeys() {
+        CertificateService certificateService = createCertificateService();
+        List<SigningKey> signingKeys = certificateService.getSigningKeys();
+        String hash = Base64.getEncoder().encodeToString(new byte[32]);
+
+        List<String> signatures = certificateService.signHashes(signingKeys, Arrays.asList(hash, hash, hash));
+
+        // two EC P-256 keys and the retired RSA 2048 key
+        assertEquals(64, Base64.getDecoder().decode(signatures.get(0)).length);
+        assertEquals(64, Base64.getDecoder().decode(signatures.get(1)).length);
+        assertEquals(256, Base64.getDecoder().decode(signatures.get(2)).length);
+    }
+
+    @Test
+    void testUnknownAlias() {
+        issuanceConfigProperties.getSigningKeys().setAliases(List.of("unknown"));
+        assertThrows(IllegalArgumentException.class, this::createCertificateService);
+    }
+
+    private CertificateService createCertificateService() {
+        CertificateService certificateService = new CertificateService(new KeyStoreProvider(),
+            new SigningServiceImpl(new SimpleMeterRegistry()), signingExecutor, issuanceConfigProperties);
+        certificateService.computeKid();
+        return certificateService;
+    }
+
+    private class KeyStoreProvider implements CertificatePrivateKeyProvider {
+        @Override
+        public Certificate getCertificate() {
+            return getCertificate(issuanceConfigProperties.getCertAlias());
+        }
+
+        @Override
+        public Certificate getCertificate(String alias) {
+            try {
+                return keyStore.getCertificate(alias);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public PrivateKey getPrivateKey() {
+            return getPrivateKey(issuanceConfigProperties.getCertAlias());
+        }
+
+        @Override
+        public PrivateKey getPrivateKey(String alias) {
+            try {
+                return (PrivateKey) keyStore.getKey(alias, "dgca".toCharArray());
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -1,7 +1,14 @@
 package eu.europa.ec.dgc.issuance.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
@@ -21,6 +28,46 @@ class ContextServiceTest {
     void getContextFromEnvironment() {
         JsonNode json = contextService.getContextDefinition();
         assertEquals("{\"test\":\"Data\"}",json.toString());
+        ContextService.SerializedContext context = contextService.getSerializedContext();
+        assertEquals("{\"test\":\"Data\"}", new String(context.getBody(), StandardCharsets.UTF_8));
+        assertTrue(context.matches(context.getEtag()));
+        assertTrue(context.matches("\"other\", W/" + context.getEtag()));
+        assertFalse(context.matches("\"other\""));
+        assertFalse(context.matches(null));
+    }
+
+    @Test
+    void reloadContextFile(@TempDir Path tempDir) throws Exception {
+        Path contextFile = tempDir.resolve("context.json");
+        Files.writeString(contextFile, "{\"Origin\":\"DE\",\"versions\":{\"default\":\"" + "a".repeat(200) + "\"}}");
+        IssuanceConfigProperties config = new IssuanceConfigProperties();
+        config.setContextFile(contextFile.toString());
+        ContextService service = new ContextService(config);
+        service.loadContextFile();
+        try {
+            ContextService.SerializedContext first = service.getSerializedContext();
+            assertEquals("DE", first.getJson().get("Origin").asText());
+            assertNotNull(first.getGzipBody());
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(first.getGzipBody()))) {
+                assertArrayEquals(first.getBody(), in.readAllBytes());
+            }
+
+            Files.writeString(contextFile, "{\"Origin\":\"AT\"");
+            assertFalse(service.reloadContextFile());
+            assertSame(first, service.getSerializedContext());
+
+            Files.writeString(contextFile, "{\"Origin\":\"AT\",\"versions\":{}}");
+            long timeout = System.currentTimeMillis() + 10_000;
+            while (service.getSerializedContext() == first && System.currentTimeMillis() < timeout) {
+                Thread.sleep(50);
+            }
+            ContextService.SerializedContext second = service.getSerializedContext();
+            assertEquals("AT", second.getJson().get("Origin").asText());
+            assertNotEquals(first.getEtag(), second.getEtag());
+            assertFalse(second.matches(first.getEtag()));
+        } finally {
+            service.stopWatching();
+        }
     }
 
 }
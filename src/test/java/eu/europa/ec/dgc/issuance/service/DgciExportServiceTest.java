@@ -0,0 +1,81 @@
+package eu.europa.ec.dgc.issuance.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.europa.ec.dgc.issuance.entity.DgciEntity;
+import eu.europa.ec.dgc.issuance.entity.GreenCertificateType;
+import eu.europa.ec.dgc.issuance.repository.DgciRepository;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class DgciExportServiceTest {
+    @Autowired
+    DgciExportService dgciExportService;
+
+    @Autowired
+    DgciRepository dgciRepository;
+
+    @Test
+    void testExportNdjson() throws Exception {
+        ZonedDateTime start = ZonedDateTime.now().minusSeconds(1);
+        DgciEntity claimed = save(GreenCertificateType.Recovery, true);
+        save(GreenCertificateType.Recovery, false);
+        save(GreenCertificateType.Test, true);
+
+        DgciExportFilter filter = new DgciExportFilter();
+        filter.setCreatedFrom(start);
+        filter.setGreenCertificateType(GreenCertificateType.Recovery);
+        filter.setClaimed(true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(1, dgciExportService.export(filter, DgciExportService.Format.NDJSON, out));
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(1, lines.length);
+        JsonNode row = new ObjectMapper().readTree(lines[0]);
+        assertEquals(claimed.getId().longValue(), row.get("id").asLong());
+        assertEquals(claimed.getDgci(), row.get("dgci").asText());
+        assertEquals("Recovery", row.get("greenCertificateType").asText());
+        assertTrue(row.get("claimed").asBoolean());
+        assertFalse(row.has("hashedTan"));
+    }
+
+    @Test
+    void testExportCsv() throws Exception {
+        ZonedDateTime start = ZonedDateTime.now().minusSeconds(1);
+        DgciEntity first = save(GreenCertificateType.Vaccination, false);
+        DgciEntity second = save(GreenCertificateType.Vaccination, false);
+
+        DgciExportFilter filter = new DgciExportFilter();
+        filter.setCreatedFrom(start);
+        filter.setGreenCertificateType(GreenCertificateType.Vaccination);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, dgciExportService.export(filter, DgciExportService.Format.CSV, out));
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\r\n");
+        assertEquals(3, lines.length);
+        assertEquals("id,dgci,dgciHash,createdAt,expiresAt,certHash,greenCertificateType,claimed,revoked,locked",
+            lines[0]);
+        assertTrue(lines[1].startsWith(first.getId() + "," + first.getDgci() + ","));
+        assertTrue(lines[2].startsWith(second.getId() + "," + second.getDgci() + ","));
+        assertTrue(lines[1].endsWith(",Vaccination,false,false,false"));
+    }
+
+    private DgciEntity save(GreenCertificateType type, boolean claimed) {
+        DgciEntity dgciEntity = new DgciEntity();
+        dgciEntity.setDgci("URN:UVCI:V1:DE:" + UUID.randomUUID());
+        dgciEntity.setDgciHash(UUID.randomUUID().toString());
+        dgciEntity.setExpiresAt(ZonedDateTime.now().plusDays(1));
+        dgciEntity.setCertHash("certHash");
+        dgciEntity.setClaimed(claimed);
+        dgciEntity.setGreenCertificateType(type);
+        return dgciRepository.saveAndFlush(dgciEntity);
+    }
+}
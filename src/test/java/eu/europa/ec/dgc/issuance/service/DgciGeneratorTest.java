@@ -23,7 +23,9 @@ package eu.europa.ec.dgc.issuance.service;
 import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class DgciGeneratorTest {
@@ -38,4 +40,39 @@ class DgciGeneratorTest {
         assertTrue(dgci.length() <= 50,"dgci too long");
         System.out.println(dgci);
     }
+
+    @Test
+    void testCheckCharacter() {
+        for (String prefix : new String[] {"URN:UVCI:V1:DE", "URN:UVCI:V1:AT1", "X"}) {
+            IssuanceConfigProperties issuanceConfigProperties = new IssuanceConfigProperties();
+            issuanceConfigProperties.setDgciPrefix(prefix);
+            DgciGenerator dgciGenerator = new DgciGenerator(issuanceConfigProperties);
+            for (int i = 0; i < 1000; i++) {
+                String dgci = dgciGenerator.newDgci();
+                assertTrue(dgci.startsWith(prefix + ":"));
+                assertEquals(checkCharacter(dgci.substring(0, dgci.length() - 1)), dgci.charAt(dgci.length() - 1));
+            }
+        }
+    }
+
+    @Test
+    void testInvalidPrefix() {
+        IssuanceConfigProperties issuanceConfigProperties = new IssuanceConfigProperties();
+        issuanceConfigProperties.setDgciPrefix("urn:uvci");
+        assertThrows(IllegalArgumentException.class, () -> new DgciGenerator(issuanceConfigProperties));
+    }
+
+    // reference Luhn mod N implementation, see https://en.wikipedia.org/wiki/Luhn_mod_N_algorithm
+    private char checkCharacter(String input) {
+        String codePoints = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789/:";
+        int n = codePoints.length();
+        int factor = 2;
+        int sum = 0;
+        for (int i = input.length() - 1; i >= 0; i--) {
+            int addend = factor * codePoints.indexOf(input.charAt(i));
+            factor = (factor == 2) ? 1 : 2;
+            sum += (addend / n) + (addend % n);
+        }
+        return codePoints.charAt((n - sum % n) % n);
+    }
 }
@@ -0,0 +1,78 @@
+package eu.europa.ec.dgc.issuance.service;
+
+import eu.europa.ec.dgc.issuance.entity.GreenCertificateType;
+import eu.europa.ec.dgc.issuance.restapi.dto.DgciIdentifier;
+import eu.europa.ec.dgc.issuance.restapi.dto.DgciInit;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// off by default, the other tests run without the filter like production
+@SpringBootTest(properties = "issuance.hashFilter.enabled=true")
+class DgciHashFilterTest {
+    @Autowired
+    DgciHashFilter dgciHashFilter;
+
+    @Autowired
+    DgciService dgciService;
+
+    @BeforeEach
+    void buildFilter() {
+        // the first build runs in the background after startup
+        dgciHashFilter.rebuild();
+    }
+
+    @Test
+    void testIssuedDgciIsContained() throws Exception {
+        DgciInit dgciInit = new DgciInit();
+        dgciInit.setGreenCertificateType(GreenCertificateType.Vaccination);
+        DgciIdentifier dgciIdentifier = dgciService.initDgci(dgciInit);
+
+        assertTrue(dgciHashFilter.mightContain(sha256(dgciIdentifier.getDgci())));
+        assertEquals(DgciService.DgciStatus.EXISTS, dgciService.checkDgciStatus(sha256(dgciIdentifier.getDgci())));
+
+        // a rebuild from database must keep the issued dgci
+        dgciHashFilter.rebuild();
+        assertTrue(dgciHashFilter.mightContain(sha256(dgciIdentifier.getDgci())));
+    }
+
+    @Test
+    void testUnknownHashesAreRejected() throws Exception {
+        int contained = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (dgciHashFilter.mightContain(sha256("unknown" + i))) {
+                contained++;
+            }
+        }
+        assertTrue(contained < 50, "false positives " + contained);
+        assertEquals(DgciService.DgciStatus.NOT_EXISTS, dgciService.checkDgciStatus(sha256("unknown")));
+    }
+
+    @Test
+    void testBloomFilter() throws Exception {
+        DgciHashFilter.BloomFilter bloomFilter = new DgciHashFilter.BloomFilter(1000, 0.01);
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (int i = 0; i < 1000; i++) {
+            bloomFilter.put(digest.digest(("dgci" + i).getBytes(StandardCharsets.UTF_8)));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(bloomFilter.mightContain(digest.digest(("dgci" + i).getBytes(StandardCharsets.UTF_8))));
+            if (bloomFilter.mightContain(digest.digest(("other" + i).getBytes(StandardCharsets.UTF_8)))) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 50, "false positives " + falsePositives);
+    }
+
+    private String sha256(String toHash) throws Exception {
+        return Base64.getEncoder().encodeToString(
+            MessageDigest.getInstance("SHA-256").digest(toHash.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,50 @@
+package eu.europa.ec.dgc.issuance.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.europa.ec.dgc.issuance.entity.DgciEntity;
+import eu.europa.ec.dgc.issuance.entity.GreenCertificateType;
+import eu.europa.ec.dgc.issuance.repository.DgciRepository;
+import eu.europa.ec.dgc.issuance.restapi.dto.DgciInit;
+import eu.europa.ec.dgc.issuance.utils.HashUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "issuance.hashMigration.enabled=false")
+class DgciHashMigrationServiceTest {
+    @Autowired
+    DgciHashMigrationService dgciHashMigrationService;
+
+    @Autowired
+    DgciService dgciService;
+
+    @Autowired
+    DgciRepository dgciRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testMigrate() throws Exception {
+        DgciInit dgciInit = new DgciInit();
+        dgciInit.setGreenCertificateType(GreenCertificateType.Vaccination);
+        String dgci = dgciService.initDgci(dgciInit).getDgci();
+        String dgciHash = HashUtil.sha256Base64(dgci);
+        DgciEntity dgciEntity = dgciRepository.findByDgciHashBin(HashUtil.decodeSha256Base64(dgciHash)).orElseThrow();
+        assertEquals(dgci, dgciEntity.getDgci());
+
+        // row as written by an older version
+        jdbcTemplate.update("UPDATE dgci SET dgci_hash_bin = NULL WHERE id = ?", dgciEntity.getId());
+
+        // before the migration has run the lookup falls back to the Base64 column
+        assertFalse(dgciHashMigrationService.isCompleted());
+        assertEquals(dgci, new ObjectMapper().readTree(dgciService.getDidDocumentJson(dgciHash)).get("id").asText());
+
+        dgciHashMigrationService.migrate();
+        assertTrue(dgciHashMigrationService.isCompleted());
+        assertTrue(dgciRepository.findByDgciHashBin(HashUtil.decodeSha256Base64(dgciHash)).isPresent());
+    }
+}
@@ -0,0 +1,131 @@
+package eu.europa.ec.dgc.issuance.service;
+
+import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
+import eu.europa.ec.dgc.issuance.entity.DgciEntity;
+import eu.europa.ec.dgc.issuance.entity.GreenCertificateType;
+import eu.europa.ec.dgc.issuance.repository.DgciRepository;
+import eu.europa.ec.dgc.issuance.utils.HashUtil;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Partitioning changeset and maintenance on a real PostgreSQL, skipped without docker.
+ */
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+class DgciPartitionPostgresTest {
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:13-alpine");
+
+    @Autowired
+    DgciPartitionService dgciPartitionService;
+
+    @Autowired
+    DgciRepository dgciRepository;
+
+    @Autowired
+    IssuanceConfigProperties issuanceConfigProperties;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.driver-class-name", postgres::getDriverClassName);
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.jpa.database-platform", () -> "org.hibernate.dialect.PostgreSQLDialect");
+        registry.add("spring.liquibase.contexts", () -> "default,partitioned");
+    }
+
+    @AfterEach
+    void resetConfig() {
+        issuanceConfigProperties.getPurge().setClaimedExpired(IssuanceConfigProperties.ClaimedExpiredAction.KEEP);
+    }
+
+    @Test
+    void testLookupSync() {
+        assertTrue(dgciPartitionService.isPartitioned());
+        DgciEntity dgciEntity = save(ZonedDateTime.now(), ZonedDateTime.now().plusDays(1), false);
+
+        assertEquals(1, countLookup(dgciEntity.getId()));
+        Optional<DgciEntity> found = dgciRepository.findByDgciHashBinFromLookup(dgciEntity.getDgciHashBin());
+        assertTrue(found.isPresent());
+        assertEquals(dgciEntity.getDgci(), found.get().getDgci());
+
+        dgciRepository.delete(dgciEntity);
+        dgciRepository.flush();
+
+        assertEquals(0, countLookup(dgciEntity.getId()));
+        assertFalse(dgciRepository.findByDgciHashBinFromLookup(dgciEntity.getDgciHashBin()).isPresent());
+    }
+
+    @Test
+    void testArchiveAndDropExpiredPartition() {
+        YearMonth month = YearMonth.now().minusMonths(2);
+        String partition = "dgci_p" + month.format(DateTimeFormatter.ofPattern("yyyyMM"));
+        jdbcTemplate.execute(String.format("CREATE TABLE %s PARTITION OF dgci FOR VALUES FROM ('%s') TO ('%s')",
+            partition, month.atDay(1), month.plusMonths(1).atDay(1)));
+        ZonedDateTime createdAt = month.atDay(10).atStartOfDay(ZoneId.systemDefault());
+        DgciEntity expiredClaimed = save(createdAt, ZonedDateTime.now().minusDays(1), true);
+        DgciEntity expiredUnclaimed = save(createdAt, ZonedDateTime.now().minusDays(1), false);
+
+        // claimed dgci are kept by default, so the partition stays
+        dgciPartitionService.maintain();
+        assertEquals(1, countPartitions(partition));
+
+        issuanceConfigProperties.getPurge().setClaimedExpired(IssuanceConfigProperties.ClaimedExpiredAction.ARCHIVE);
+        dgciPartitionService.maintain();
+
+        assertEquals(0, countPartitions(partition));
+        assertFalse(dgciRepository.findById(expiredClaimed.getId()).isPresent());
+        assertFalse(dgciRepository.findById(expiredUnclaimed.getId()).isPresent());
+        assertEquals(0, countLookup(expiredClaimed.getId()));
+        assertEquals(0, countLookup(expiredUnclaimed.getId()));
+        assertEquals(expiredClaimed.getDgci(), jdbcTemplate.queryForObject(
+            "SELECT dgci FROM dgci_archive WHERE id = ?", String.class, expiredClaimed.getId()));
+        assertEquals("kidOfKey", jdbcTemplate.queryForObject(
+            "SELECT kid FROM dgci_archive WHERE id = ?", String.class, expiredClaimed.getId()));
+        assertEquals(0, jdbcTemplate.queryForObject(
+            "SELECT count(*) FROM dgci_archive WHERE id = ?", Integer.class, expiredUnclaimed.getId()));
+    }
+
+    private DgciEntity save(ZonedDateTime createdAt, ZonedDateTime expiresAt, boolean claimed) {
+        DgciEntity dgciEntity = new DgciEntity();
+        dgciEntity.setDgci("URN:UVCI:V1:DE:" + UUID.randomUUID());
+        dgciEntity.setDgciHash(HashUtil.sha256Base64(dgciEntity.getDgci()));
+        dgciEntity.setCreatedAt(createdAt);
+        dgciEntity.setExpiresAt(expiresAt);
+        dgciEntity.setCertHash("certHash");
+        dgciEntity.setClaimed(claimed);
+        dgciEntity.setGreenCertificateType(GreenCertificateType.Vaccination);
+        dgciEntity.setKid("kidOfKey");
+        return dgciRepository.saveAndFlush(dgciEntity);
+    }
+
+    private int countLookup(long id) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM dgci_lookup WHERE id = ?", Integer.class, id);
+    }
+
+    private int countPartitions(String partition) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM pg_class WHERE relname = ?", Integer.class,
+            partition);
+    }
+}
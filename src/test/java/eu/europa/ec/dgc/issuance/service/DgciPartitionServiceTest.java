@@ -0,0 +1,20 @@
+package eu.europa.ec.dgc.issuance.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class DgciPartitionServiceTest {
+    @Autowired
+    DgciPartitionService dgciPartitionService;
+
+    @Test
+    void testNotPartitionedOnH2() {
+        assertFalse(dgciPartitionService.isPartitioned());
+        // without partitioning the scheduled maintenance must not touch the database
+        assertDoesNotThrow(() -> dgciPartitionService.scheduledMaintain());
+    }
+}
@@ -0,0 +1,86 @@
+package eu.europa.ec.dgc.issuance.service;
+
+import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
+import eu.europa.ec.dgc.issuance.entity.DgciEntity;
+import eu.europa.ec.dgc.issuance.entity.GreenCertificateType;
+import eu.europa.ec.dgc.issuance.repository.DgciRepository;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class DgciPurgeServiceTest {
+    @Autowired
+    DgciPurgeService dgciPurgeService;
+
+    @Autowired
+    DgciRepository dgciRepository;
+
+    @Autowired
+    IssuanceConfigProperties issuanceConfigProperties;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void resetConfig() {
+        issuanceConfigProperties.getPurge().setClaimedExpired(IssuanceConfigProperties.ClaimedExpiredAction.KEEP);
+        issuanceConfigProperties.getPurge().setEnabled(false);
+    }
+
+    @Test
+    void testScheduledPurgeTakesClusterLock() {
+        DgciEntity expiredUnclaimed = save(ZonedDateTime.now().minusDays(1), "certHash", false);
+        issuanceConfigProperties.getPurge().setEnabled(true);
+
+        dgciPurgeService.scheduledPurge();
+
+        assertFalse(dgciRepository.findById(expiredUnclaimed.getId()).isPresent());
+        assertEquals(1, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM shedlock WHERE name = 'dgci_purge'", Integer.class));
+    }
+
+    @Test
+    void testPurge() {
+        DgciEntity expiredUnclaimed = save(ZonedDateTime.now().minusDays(1), "certHash", false);
+        DgciEntity validUnclaimed = save(ZonedDateTime.now().plusDays(1), "certHash", false);
+        DgciEntity unsignedReservation = save(ZonedDateTime.now().plusDays(1), null, false);
+        unsignedReservation.setCreatedAt(ZonedDateTime.now().minusDays(3));
+        dgciRepository.saveAndFlush(unsignedReservation);
+        DgciEntity expiredClaimed = save(ZonedDateTime.now().minusDays(1), "certHash", true);
+
+        dgciPurgeService.purge();
+
+        assertFalse(dgciRepository.findById(expiredUnclaimed.getId()).isPresent());
+        assertFalse(dgciRepository.findById(unsignedReservation.getId()).isPresent());
+        assertTrue(dgciRepository.findById(validUnclaimed.getId()).isPresent());
+        assertTrue(dgciRepository.findById(expiredClaimed.getId()).isPresent());
+
+        issuanceConfigProperties.getPurge().setClaimedExpired(IssuanceConfigProperties.ClaimedExpiredAction.ARCHIVE);
+        dgciPurgeService.purge();
+
+        assertFalse(dgciRepository.findById(expiredClaimed.getId()).isPresent());
+        assertEquals(expiredClaimed.getDgci(), jdbcTemplate.queryForObject(
+            "SELECT dgci FROM dgci_archive WHERE id = ?", String.class, expiredClaimed.getId()));
+        assertEquals("kidOfKey", jdbcTemplate.queryForObject(
+            "SELECT kid FROM dgci_archive WHERE id = ?", String.class, expiredClaimed.getId()));
+    }
+
+    private DgciEntity save(ZonedDateTime expiresAt, String certHash, boolean claimed) {
+        DgciEntity dgciEntity = new DgciEntity();
+        dgciEntity.setDgci("URN:UVCI:V1:DE:" + UUID.randomUUID());
+        dgciEntity.setDgciHash(UUID.randomUUID().toString());
+        dgciEntity.setExpiresAt(expiresAt);
+        dgciEntity.setCertHash(certHash);
+        dgciEntity.setClaimed(claimed);
+        dgciEntity.setGreenCertificateType(GreenCertificateType.Vaccination);
+        dgciEntity.setKid("kidOfKey");
+        return dgciRepository.saveAndFlush(dgciEntity);
+    }
+}
@@ -0,0 +1,73 @@
+package eu.europa.ec.dgc.issuance.service;
+
+import eu.europa.ec.dgc.issuance.entity.GreenCertificateType;
+import eu.europa.ec.dgc.issuance.restapi.dto.DgciInit;
+import eu.europa.ec.dgc.issuance.utils.HashUtil;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class DgciRevocationServiceTest {
+    @Autowired
+    DgciRevocationService dgciRevocationService;
+
+    @Autowired
+    DgciService dgciService;
+
+    @Test
+    void testRevoke() {
+        String dgci = initDgci();
+        String dgciHash = HashUtil.sha256Base64(dgci);
+        assertEquals(DgciService.DgciStatus.EXISTS, dgciService.checkDgciStatus(dgciHash));
+
+        DgciRevocationService.Result result =
+            dgciRevocationService.apply(DgciRevocationService.Action.REVOKE, List.of(dgci), null);
+        assertEquals(1, result.getRequested());
+        assertEquals(1, result.getUpdated());
+        assertEquals(DgciService.DgciStatus.REVOKED, dgciService.checkDgciStatus(dgciHash));
+
+        // already revoked
+        result = dgciRevocationService.apply(DgciRevocationService.Action.REVOKE, null, List.of(dgciHash));
+        assertEquals(1, result.getRequested());
+        assertEquals(0, result.getUpdated());
+    }
+
+    @Test
+    void testLockBulk() throws Exception {
+        String first = initDgci();
+        String second = initDgci();
+        String input = toBase64Url(HashUtil.sha256Base64(first)) + "\n"
+            + "\n"
+            + "not a hash\n"
+            + HashUtil.sha256Base64(second) + "\n";
+
+        DgciRevocationService.Result result = dgciRevocationService.apply(DgciRevocationService.Action.LOCK,
+            new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(2, result.getRequested());
+        assertEquals(2, result.getUpdated());
+        assertEquals(1, result.getInvalid());
+        assertEquals(DgciService.DgciStatus.LOCKED, dgciService.checkDgciStatus(HashUtil.sha256Base64(first)));
+        assertEquals(DgciService.DgciStatus.LOCKED, dgciService.checkDgciStatus(HashUtil.sha256Base64(second)));
+
+        result = dgciRevocationService.apply(DgciRevocationService.Action.UNLOCK, List.of(first), null);
+        assertEquals(1, result.getUpdated());
+        assertEquals(DgciService.DgciStatus.EXISTS, dgciService.checkDgciStatus(HashUtil.sha256Base64(first)));
+    }
+
+    private String initDgci() {
+        DgciInit dgciInit = new DgciInit();
+        dgciInit.setGreenCertificateType(GreenCertificateType.Vaccination);
+        return dgciService.initDgci(dgciInit).getDgci();
+    }
+
+    private static String toBase64Url(String base64) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Base64.getDecoder().decode(base64));
+    }
+}
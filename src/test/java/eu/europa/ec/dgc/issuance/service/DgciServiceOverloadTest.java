@@ -0,0 +1,93 @@
+package eu.europa.ec.dgc.issuance.service;
+
+import eu.europa.ec.dgc.issuance.entity.GreenCertificateType;
+import eu.europa.ec.dgc.issuance.repository.DgciRepository;
+import eu.europa.ec.dgc.issuance.restapi.dto.DgciBatchInit;
+import eu.europa.ec.dgc.issuance.restapi.dto.DgciBatchIssueItem;
+import eu.europa.ec.dgc.issuance.restapi.dto.DgciBatchIssueResult;
+import eu.europa.ec.dgc.issuance.restapi.dto.DgciIdentifier;
+import eu.europa.ec.dgc.issuance.restapi.dto.DgciInit;
+import eu.europa.ec.dgc.issuance.restapi.dto.IssueData;
+import eu.europa.ec.dgc.issuance.restapi.dto.SignatureData;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+
+@SpringBootTest
+class DgciServiceOverloadTest {
+    @Autowired
+    DgciService dgciService;
+
+    @Autowired
+    DgciRepository dgciRepository;
+
+    @SpyBean
+    CertificateService certificateService;
+
+    @Test
+    void testFinishDgciRetryAfterOverload() throws Exception {
+        DgciInit dgciInit = new DgciInit();
+        dgciInit.setGreenCertificateType(GreenCertificateType.Vaccination);
+        DgciIdentifier dgciIdentifier = dgciService.initDgci(dgciInit);
+        IssueData issueData = new IssueData();
+        issueData.setHash(Base64.getEncoder().encodeToString(
+            MessageDigest.getInstance("SHA-256").digest("test".getBytes(StandardCharsets.UTF_8))));
+
+        doThrow(new SigningOverloaded("signing queue is full", Duration.ofSeconds(1)))
+            .doCallRealMethod()
+            .when(certificateService).signHash(any(SigningKey.class), anyString());
+        assertThrows(SigningOverloaded.class, () -> dgciService.finishDgci(dgciIdentifier.getId(), issueData));
+        assertNull(dgciRepository.findByDgci(dgciIdentifier.getDgci()).get().getCertHash());
+
+        // the retry asked for by the 503 must sign the certificate
+        SignatureData signatureData = dgciService.finishDgci(dgciIdentifier.getId(), issueData);
+        assertNotNull(signatureData.getSignature());
+        assertEquals(8, signatureData.getTan().length());
+        assertEquals(issueData.getHash(), dgciRepository.findByDgci(dgciIdentifier.getDgci()).get().getCertHash());
+
+        assertThrows(DgciConflict.class, () -> dgciService.finishDgci(dgciIdentifier.getId(), issueData));
+    }
+
+    @Test
+    void testFinishDgciBatchRetryAfterOverload() throws Exception {
+        DgciBatchInit dgciBatchInit = new DgciBatchInit();
+        dgciBatchInit.setGreenCertificateType(GreenCertificateType.Test);
+        dgciBatchInit.setCount(5);
+        List<DgciIdentifier> dgciIdentifiers = dgciService.initDgciBatch(dgciBatchInit);
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        List<DgciBatchIssueItem> items = new ArrayList<>();
+        for (DgciIdentifier dgciIdentifier : dgciIdentifiers) {
+            IssueData issueData = new IssueData();
+            issueData.setHash(Base64.getEncoder().encodeToString(
+                digest.digest(dgciIdentifier.getDgci().getBytes(StandardCharsets.UTF_8))));
+            items.add(new DgciBatchIssueItem(dgciIdentifier.getId(), issueData));
+        }
+
+        doThrow(new SigningOverloaded("signing queue is full", Duration.ofSeconds(1)))
+            .doCallRealMethod()
+            .when(certificateService).signHashes(anyList(), anyList());
+        assertThrows(SigningOverloaded.class, () -> dgciService.finishDgciBatch(items));
+        for (DgciIdentifier dgciIdentifier : dgciIdentifiers) {
+            assertNull(dgciRepository.findByDgci(dgciIdentifier.getDgci()).get().getCertHash());
+        }
+
+        List<DgciBatchIssueResult> results = dgciService.finishDgciBatch(items);
+        for (DgciBatchIssueResult result : results) {
+            assertNull(result.getError());
+            assertNotNull(result.getSignature());
+        }
+    }
+}
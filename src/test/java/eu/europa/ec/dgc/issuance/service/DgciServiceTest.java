@@ -10,6 +10,9 @@ import eu.europa.ec.dgc.issuance.entity.GreenCertificateType;
 import eu.europa.ec.dgc.issuance.repository.DgciRepository;
 import eu.europa.ec.dgc.issuance.restapi.dto.ClaimRequest;
 import eu.europa.ec.dgc.issuance.restapi.dto.ClaimResponse;
+import eu.europa.ec.dgc.issuance.restapi.dto.DgciBatchInit;
+import eu.europa.ec.dgc.issuance.restapi.dto.DgciBatchIssueItem;
+import eu.europa.ec.dgc.issuance.restapi.dto.DgciBatchIssueResult;
 import eu.europa.ec.dgc.issuance.restapi.dto.DgciIdentifier;
 import eu.europa.ec.dgc.issuance.restapi.dto.DgciInit;
 import eu.europa.ec.dgc.issuance.restapi.dto.DidDocument;
@@ -18,6 +21,8 @@ import eu.europa.ec.dgc.issuance.restapi.dto.EgdcCodeData;
 import eu.europa.ec.dgc.issuance.restapi.dto.IssueData;
 import eu.europa.ec.dgc.issuance.restapi.dto.PublicKey;
 import eu.europa.ec.dgc.issuance.restapi.dto.SignatureData;
+import eu.europa.ec.dgc.issuance.utils.HashUtil;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.io.ByteArrayOutputStream;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
@@ -29,10 +34,16 @@ import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.Signature;
 import java.security.SignatureException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.List;
 import java.util.Optional;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import lombok.extern.slf4j.Slf4j;
 import org.bouncycastle.crypto.params.AsymmetricKeyParameter;
 import org.bouncycastle.crypto.signers.ECDSASigner;
@@ -63,6 +74,9 @@ class DgciServiceTest {
     @Autowired
     CertificateService certificateService;
 
+    @Autowired
+    MeterRegistry meterRegistry;
+
     @Test
     void testDGCIInit() throws Exception {
         DgciInit dgciInit = new DgciInit();
@@ -70,6 +84,21 @@ class DgciServiceTest {
         DgciIdentifier dgciIdentifier = dgciService.initDgci(dgciInit);
         assertNotNull(dgciIdentifier.getDgci());
         assertTrue(dgciIdentifier.getDgci().startsWith(issuanceConfigProperties.getDgciPrefix()));
+        assertEquals(dgciIdentifier.getKid(), dgciRepository.findByDgci(dgciIdentifier.getDgci()).get().getKid());
+    }
+
+    @Test
+    void testDGCIInitBatch() throws Exception {
+        DgciBatchInit dgciBatchInit = new DgciBatchInit();
+        dgciBatchInit.setGreenCertificateType(GreenCertificateType.Test);
+        dgciBatchInit.setCount(120);
+        List<DgciIdentifier> dgciIdentifiers = dgciService.initDgciBatch(dgciBatchInit);
+        assertEquals(120, dgciIdentifiers.size());
+        assertEquals(120, dgciIdentifiers.stream().map(DgciIdentifier::getId).distinct().count());
+        for (DgciIdentifier dgciIdentifier : dgciIdentifiers) {
+            assertTrue(dgciIdentifier.getDgci().startsWith(issuanceConfigProperties.getDgciPrefix()));
+            assertTrue(dgciRepository.findByDgci(dgciIdentifier.getDgci()).isPresent());
+        }
     }
 
     @Test
@@ -90,10 +119,54 @@ class DgciServiceTest {
         assertEquals(8,signatureData.getTan().length());
 
         String dgciHash = sha256(dgciIdentifier.getDgci());
-        DidDocument didDocument = dgciService.getDidDocument(dgciHash);
+        DidDocument didDocument = new ObjectMapper().readValue(dgciService.getDidDocumentJson(dgciHash),
+            DidDocument.class);
         assertNotNull(didDocument);
     }
 
+    @Test
+    void testDGCISignBatch() throws Exception {
+        DgciBatchInit dgciBatchInit = new DgciBatchInit();
+        dgciBatchInit.setGreenCertificateType(GreenCertificateType.Vaccination);
+        dgciBatchInit.setCount(20);
+        List<DgciIdentifier> dgciIdentifiers = dgciService.initDgciBatch(dgciBatchInit);
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        List<DgciBatchIssueItem> items = new ArrayList<>();
+        for (DgciIdentifier dgciIdentifier : dgciIdentifiers) {
+            IssueData issueData = new IssueData();
+            issueData.setHash(Base64.getEncoder().encodeToString(digest.digest(dgciIdentifier.getDgci().getBytes())));
+            items.add(new DgciBatchIssueItem(dgciIdentifier.getId(), issueData));
+        }
+        // already signed in this batch, unknown id and invalid hash
+        items.add(new DgciBatchIssueItem(dgciIdentifiers.get(0).getId(), items.get(0).getIssueData()));
+        items.add(new DgciBatchIssueItem("999999999_AAAA", items.get(0).getIssueData()));
+        IssueData invalidHash = new IssueData();
+        invalidHash.setHash("not base64!");
+        items.add(new DgciBatchIssueItem(dgciIdentifiers.get(1).getId(), invalidHash));
+
+        List<DgciBatchIssueResult> results = dgciService.finishDgciBatch(items);
+        assertEquals(items.size(), results.size());
+        for (int i = 0; i < dgciIdentifiers.size(); i++) {
+            DgciBatchIssueResult result = results.get(i);
+            assertEquals(dgciIdentifiers.get(i).getId(), result.getId());
+            assertNull(result.getError());
+            assertEquals(8, result.getTan().length());
+            assertNotNull(result.getSignature());
+            DgciEntity dgciEntity = dgciRepository.findByDgci(dgciIdentifiers.get(i).getDgci()).get();
+            assertEquals(items.get(i).getIssueData().getHash(), dgciEntity.getCertHash());
+            assertEquals(HashUtil.sha256Base64(result.getTan()), dgciEntity.getHashedTan());
+        }
+        assertEquals("duplicate ID in batch", results.get(20).getError());
+        assertTrue(results.get(21).getError().contains("not found"));
+        assertEquals("hash is not base64 encoded", results.get(22).getError());
+
+        // a second batch must not sign again
+        List<DgciBatchIssueResult> again = dgciService.finishDgciBatch(items.subList(0, 1));
+        assertEquals("Already signed", again.get(0).getError());
+        assertNull(again.get(0).getSignature());
+    }
+
     @Test
     void testCreateEdgcBackend() throws Exception {
         String vacDataJson = SampleData.vaccination;
@@ -107,6 +180,7 @@ class DgciServiceTest {
         assertNotNull(dgciEnitiyOpt.get().getDgciHash());
         assertNotNull(dgciEnitiyOpt.get().getHashedTan());
         assertNotNull(dgciEnitiyOpt.get().getExpiresAt());
+        assertEquals(certificateService.getKidAsBase64(), dgciEnitiyOpt.get().getKid());
 
         EgcDecodeResult decodeResult = edgcValidator.decodeEdgc(egdcCodeData.getQrCode());
         assertTrue(decodeResult.isValidated());
@@ -119,6 +193,7 @@ class DgciServiceTest {
         JsonNode payload = cborJson.get("-260").get("1");
         assertNotNull(payload);
         assertTrue(payload.isObject());
+        assertEquals(egdcCodeData.getDgci(), payload.get("v").get(0).get("ci").asText());
     }
 
     @Test
@@ -156,7 +231,8 @@ class DgciServiceTest {
         dgciService.claim(newClaimRequest);
 
         String dgciHash = sha256(egdcCodeData.getDgci());
-        DidDocument didDocument = dgciService.getDidDocument(dgciHash);
+        DidDocument didDocument = new ObjectMapper().readValue(dgciService.getDidDocumentJson(dgciHash),
+            DidDocument.class);
         assertNotNull(didDocument);
         assertNotNull(didDocument.getAuthentication());
         assertFalse(didDocument.getAuthentication().isEmpty());
@@ -191,14 +267,22 @@ class DgciServiceTest {
         ClaimRequest claimRequest = generateClaimRequest(Hex.decode(decodeResult.getCoseHex()),
             egdcCodeData.getDgci(),tanHash, certHash,
             "EC","SHA256withECDSA");
+        String dgciHashBeforeClaim = sha256(egdcCodeData.getDgci());
+        JsonNode didBeforeClaim = new ObjectMapper().readTree(dgciService.getDidDocumentJson(dgciHashBeforeClaim));
+        assertEquals(0, didBeforeClaim.get("authentication").size());
         dgciService.claim(claimRequest);
+        // claim must invalidate the cached DID document
+        JsonNode didAfterClaim = new ObjectMapper().readTree(dgciService.getDidDocumentJson(dgciHashBeforeClaim));
+        assertEquals(1, didAfterClaim.get("authentication").size());
+        assertEquals(egdcCodeData.getDgci(), didAfterClaim.get("id").asText());
 
         dgciEnitiyOpt = dgciRepository.findByDgci(egdcCodeData.getDgci());
         assertTrue(dgciEnitiyOpt.isPresent());
         assertTrue(dgciEnitiyOpt.get().isClaimed());
 
         String dgciHash = sha256(egdcCodeData.getDgci());
-        DidDocument didDocument = dgciService.getDidDocument(dgciHash);
+        DidDocument didDocument = new ObjectMapper().readValue(dgciService.getDidDocumentJson(dgciHash),
+            DidDocument.class);
         assertNotNull(didDocument);
         assertNotNull(didDocument.getAuthentication());
         assertFalse(didDocument.getAuthentication().isEmpty());
@@ -208,6 +292,69 @@ class DgciServiceTest {
 
 
 
+    @Test
+    void testWalletClaimRetryCounter() throws Exception {
+        EgdcCodeData egdcCodeData = dgciService.createEdgc(SampleData.vaccination);
+        DgciEntity dgciEntity = dgciRepository.findByDgci(egdcCodeData.getDgci()).get();
+        EgcDecodeResult decodeResult = edgcValidator.decodeEdgc(egdcCodeData.getQrCode());
+        String wrongTanHash = Base64.getEncoder().encodeToString(
+            MessageDigest.getInstance("SHA-256").digest("wrong".getBytes(StandardCharsets.UTF_8)));
+
+        ClaimRequest wrongTanRequest = generateClaimRequest(Hex.decode(decodeResult.getCoseHex()),
+            egdcCodeData.getDgci(), wrongTanHash, dgciEntity.getCertHash(), "EC", "SHA256withECDSA");
+        for (int i = 0; i <= ClaimRetryCounter.MAX_CLAIM_RETRY_TAN; i++) {
+            WrongRequest e = assertThrows(WrongRequest.class, () -> dgciService.claim(wrongTanRequest));
+            assertEquals("TAN mismatch", e.getMessage());
+        }
+        assertEquals(ClaimRetryCounter.MAX_CLAIM_RETRY_TAN + 1,
+            dgciRepository.findByDgci(egdcCodeData.getDgci()).get().getRetryCounter());
+
+        // even the right TAN is rejected now
+        ClaimRequest claimRequest = generateClaimRequest(Hex.decode(decodeResult.getCoseHex()),
+            egdcCodeData.getDgci(), dgciEntity.getHashedTan(), dgciEntity.getCertHash(), "EC", "SHA256withECDSA");
+        WrongRequest e = assertThrows(WrongRequest.class, () -> dgciService.claim(claimRequest));
+        assertEquals("Claim max try exceeded", e.getMessage());
+    }
+
+    @Test
+    void testConcurrentWalletClaim() throws Exception {
+        EgdcCodeData egdcCodeData = dgciService.createEdgc(SampleData.vaccination);
+        DgciEntity dgciEntity = dgciRepository.findByDgci(egdcCodeData.getDgci()).get();
+        EgcDecodeResult decodeResult = edgcValidator.decodeEdgc(egdcCodeData.getQrCode());
+        ClaimRequest claimRequest = generateClaimRequest(Hex.decode(decodeResult.getCoseHex()),
+            egdcCodeData.getDgci(), dgciEntity.getHashedTan(), dgciEntity.getCertHash(), "EC", "SHA256withECDSA");
+
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        List<Future<ClaimResponse>> claims = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            claims.add(executorService.submit(() -> dgciService.claim(claimRequest)));
+        }
+        int successful = 0;
+        for (Future<ClaimResponse> claim : claims) {
+            try {
+                assertNotNull(claim.get().getTan());
+                successful++;
+            } catch (ExecutionException e) {
+                // the losers see the claim of the winner, they must not be counted as a wrong TAN
+                assertTrue(e.getCause() instanceof DgciConflict, e.getCause().toString());
+            }
+        }
+        executorService.shutdown();
+        // only one claim may get the new TAN
+        assertEquals(1, successful);
+        assertEquals(0, dgciRepository.findByDgci(egdcCodeData.getDgci()).get().getRetryCounter());
+    }
+
+    @Test
+    void testIssuingMetrics() {
+        dgciService.createEdgc(SampleData.vaccination);
+
+        assertTrue(meterRegistry.get("issuance.chain.stage").tag("stage", "cose").timer().count() > 0);
+        assertTrue(meterRegistry.get("issuance.dgci.operation").tag("method", "createEdgc")
+            .tag("exception", "none").timer().count() > 0);
+        assertTrue(meterRegistry.get("issuance.tan.create").timer().count() > 0);
+    }
+
     private ClaimRequest generateClaimRequest(byte[] coseMessage, String dgci, String tanHash, String certHash64, String keyType, String sigAlg) throws Exception {
         ClaimRequest claimRequest = new ClaimRequest();
         claimRequest.setDgci(dgci);
@@ -0,0 +1,90 @@
+package eu.europa.ec.dgc.issuance.service;
+
+import eu.europa.ec.dgc.issuance.entity.GreenCertificateType;
+import eu.europa.ec.dgc.issuance.restapi.dto.DgciInit;
+import eu.europa.ec.dgc.issuance.utils.HashUtil;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class RevocationListServiceTest {
+    @Autowired
+    RevocationListService revocationListService;
+
+    @Autowired
+    DgciRevocationService dgciRevocationService;
+
+    @Autowired
+    DgciService dgciService;
+
+    @Test
+    void testRevokedDgciIsListed() {
+        String revoked = initDgci();
+        String valid = initDgci();
+        dgciRevocationService.apply(DgciRevocationService.Action.REVOKE, List.of(revoked), null);
+
+        RevocationListService.RevocationList revocationList = revocationListService.getRevocationList();
+        assertNotNull(revocationList);
+        byte[] blob = revocationList.getBlob();
+        assertTrue(contains(blob, revoked));
+        assertFalse(contains(blob, valid));
+        assertTrue(mightContain(blob, revoked));
+        assertEquals(revocationList.getCount(), ByteBuffer.wrap(blob).getInt(24));
+
+        // a rebuild from database gives the same list
+        revocationListService.rebuild();
+        assertEquals(revocationList.getEtag(), revocationListService.getRevocationList().getEtag());
+
+        byte[] delta = revocationListService.getDelta(revocationList.getVersion());
+        assertEquals(1, delta[4]);
+        assertEquals(0, ByteBuffer.wrap(delta).getInt(28));
+        assertTrue(contains(delta, revoked));
+    }
+
+    private String initDgci() {
+        DgciInit dgciInit = new DgciInit();
+        dgciInit.setGreenCertificateType(GreenCertificateType.Vaccination);
+        return dgciService.initDgci(dgciInit).getDgci();
+    }
+
+    private static byte[] prefix(byte[] blob, String dgci) {
+        return Arrays.copyOf(Base64.getDecoder().decode(HashUtil.sha256Base64(dgci)), blob[5]);
+    }
+
+    private static boolean contains(byte[] blob, String dgci) {
+        ByteBuffer buffer = ByteBuffer.wrap(blob);
+        int prefixLength = blob[5];
+        int count = buffer.getInt(24);
+        int offset = 32 + buffer.getInt(28);
+        byte[] prefix = prefix(blob, dgci);
+        for (int i = 0; i < count; i++) {
+            int start = offset + i * prefixLength;
+            if (Arrays.equals(prefix, 0, prefixLength, blob, start, start + prefixLength)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean mightContain(byte[] blob, String dgci) {
+        int hashCount = blob[6];
+        long bitCount = 8L * ByteBuffer.wrap(blob).getInt(28);
+        ByteBuffer prefix = ByteBuffer.wrap(prefix(blob, dgci));
+        long h1 = Integer.toUnsignedLong(prefix.getInt());
+        long h2 = Integer.toUnsignedLong(prefix.getInt());
+        for (int j = 0; j < hashCount; j++) {
+            long index = (h1 + j * h2) % bitCount;
+            if ((blob[32 + (int) (index >>> 3)] & (1 << (index & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,174 @@
+package eu.europa.ec.dgc.issuance.service;
+
+import eu.europa.ec.dgc.issuance.config.ErrorHandler;
+import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
+import eu.europa.ec.dgc.issuance.restapi.dto.ProblemReportDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SigningExecutorTest {
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    IssuanceConfigProperties issuanceConfigProperties = new IssuanceConfigProperties();
+    SigningExecutor signingExecutor;
+
+    @BeforeEach
+    void startExecutor() {
+        issuanceConfigProperties.getExecution().setCpuThreads(2);
+        issuanceConfigProperties.getExecution().setQueueCapacity(2);
+        issuanceConfigProperties.getExecution().setRetryAfter(Duration.ofSeconds(3));
+        signingExecutor = new SigningExecutor(issuanceConfigProperties, meterRegistry);
+        signingExecutor.startExecutor();
+    }
+
+    @AfterEach
+    void stopExecutor() {
+        signingExecutor.stopExecutor();
+    }
+
+    @Test
+    void testResultAndExceptions() {
+        assertEquals("signed", signingExecutor.call(() -> "signed"));
+        WrongRequest wrongRequest = new WrongRequest("invalid");
+        assertSame(wrongRequest, assertThrows(WrongRequest.class, () -> signingExecutor.call(() -> {
+            throw wrongRequest;
+        })));
+        // nested calls run on the calling worker
+        assertEquals("nested", signingExecutor.call(() -> signingExecutor.call(() -> "nested")));
+    }
+
+    @Test
+    void testConcurrencyIsBounded() throws Exception {
+        // a queue that holds the whole load, rejection is tested separately
+        signingExecutor.stopExecutor();
+        issuanceConfigProperties.getExecution().setQueueCapacity(32);
+        signingExecutor = new SigningExecutor(issuanceConfigProperties, new SimpleMeterRegistry());
+        signingExecutor.startExecutor();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ExecutorService requestThreads = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                futures.add(requestThreads.submit(() -> signingExecutor.call(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                    return Thread.currentThread().getName();
+                })));
+            }
+            for (Future<String> future : futures) {
+                assertTrue(future.get().startsWith("signing-"));
+            }
+        } finally {
+            requestThreads.shutdown();
+        }
+        assertEquals(2, maxRunning.get(), "concurrent tasks");
+    }
+
+    @Test
+    void testFullQueueIsRejected() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService requestThreads = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(requestThreads.submit(() -> signingExecutor.call(() -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "signed";
+                })));
+            }
+            // two tasks are running and two are queued
+            while (meterRegistry.get("issuance.signing.queue.size").gauge().value() < 2) {
+                Thread.sleep(1);
+            }
+            SigningOverloaded overloaded = assertThrows(SigningOverloaded.class,
+                () -> signingExecutor.call(() -> "rejected"));
+            assertEquals(Duration.ofSeconds(3), overloaded.getRetryAfter());
+            assertEquals(1, meterRegistry.get("issuance.signing.rejected").counter().count());
+
+            release.countDown();
+            for (Future<String> future : futures) {
+                assertEquals("signed", future.get());
+            }
+            assertEquals(4, meterRegistry.get("issuance.signing.execution").timer().count());
+            assertEquals(4, meterRegistry.get("issuance.signing.wait").timer().count());
+        } finally {
+            release.countDown();
+            requestThreads.shutdown();
+        }
+    }
+
+    @Test
+    void testRejectedSliceCancelsSubmittedSlices() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService requestThreads = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                futures.add(requestThreads.submit(() -> signingExecutor.call(() -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "signed";
+                })));
+            }
+            // two tasks are running and one is queued, so the first slice is queued and the second rejected
+            while (meterRegistry.get("issuance.signing.queue.size").gauge().value() < 1) {
+                Thread.sleep(1);
+            }
+            AtomicInteger executed = new AtomicInteger();
+            List<Supplier<String>> tasks = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                tasks.add(() -> "signed " + executed.incrementAndGet());
+            }
+            assertThrows(SigningOverloaded.class, () -> signingExecutor.callAll(tasks));
+
+            release.countDown();
+            for (Future<String> future : futures) {
+                assertEquals("signed", future.get());
+            }
+            while (meterRegistry.get("issuance.signing.queue.size").gauge().value() > 0) {
+                Thread.sleep(1);
+            }
+            assertEquals(0, executed.get());
+            assertEquals(3, meterRegistry.get("issuance.signing.execution").timer().count());
+        } finally {
+            release.countDown();
+            requestThreads.shutdown();
+        }
+    }
+
+    @Test
+    void testOverloadedResponse() {
+        ResponseEntity<ProblemReportDto> response = new ErrorHandler()
+            .handleException(new SigningOverloaded("signing queue is full", Duration.ofSeconds(3)));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("3", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+}
@@ -20,10 +20,16 @@
 
 package eu.europa.ec.dgc.issuance.service;
 
+import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
+import eu.europa.ec.dgc.issuance.utils.HashUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.HashSet;
+import java.util.Set;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TanServiceTest {
 
@@ -34,4 +40,29 @@ class TanServiceTest {
         assertEquals(8, tan.getRawTan().length());
     }
 
+    @Test
+    void testTanPool() throws Exception {
+        IssuanceConfigProperties issuanceConfigProperties = new IssuanceConfigProperties();
+        issuanceConfigProperties.getTanPool().setEnabled(true);
+        issuanceConfigProperties.getTanPool().setSize(10);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TanService tanService = new TanService(issuanceConfigProperties, meterRegistry);
+        tanService.start();
+        try {
+            for (int i = 0; i < 100 && meterRegistry.get("issuance.tan.pool.size").gauge().value() < 10; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(10, meterRegistry.get("issuance.tan.pool.size").gauge().value());
+
+            Set<String> tans = new HashSet<>();
+            for (int i = 0; i < 50; i++) {
+                Tan tan = tanService.createTan();
+                assertEquals(HashUtil.sha256Base64(tan.getRawTan()), tan.getHashedTan());
+                assertTrue(tans.add(tan.getRawTan()), "TAN handed out twice");
+            }
+            assertTrue(meterRegistry.get("issuance.tan.pool.refilled").counter().count() >= 10);
+        } finally {
+            tanService.stop();
+        }
+    }
 }
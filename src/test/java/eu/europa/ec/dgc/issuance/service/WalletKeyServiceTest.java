@@ -0,0 +1,73 @@
+package eu.europa.ec.dgc.issuance.service;
+
+import eu.europa.ec.dgc.issuance.restapi.dto.PublicKey;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WalletKeyServiceTest {
+    WalletKeyService walletKeyService = new WalletKeyService();
+
+    @Test
+    void testEcdsaP256() throws Exception {
+        assertSignatures(ecKeyPair("secp256r1"), "EC", "SHA256withECDSA");
+    }
+
+    @Test
+    void testEcdsaP384() throws Exception {
+        assertSignatures(ecKeyPair("secp384r1"), "EC", "SHA256withECDSA");
+    }
+
+    @Test
+    void testRsa() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        assertSignatures(keyPairGenerator.generateKeyPair(), "RSA", "SHA256WithRSA");
+    }
+
+    @Test
+    void testInvalidInput() throws Exception {
+        WalletKeyService.ClaimKey claimKey = walletKeyService.parse(publicKey(ecKeyPair("secp256r1"), "EC"));
+        byte[] data = "data".getBytes(StandardCharsets.UTF_8);
+        assertThrows(WrongRequest.class, () -> walletKeyService.verify(claimKey, "SHA256withECDSA", data, data));
+        assertThrows(WrongRequest.class, () -> walletKeyService.verify(claimKey, "unknown", data, data));
+
+        PublicKey unknownType = publicKey(ecKeyPair("secp256r1"), "UNKNOWN");
+        assertThrows(WrongRequest.class, () -> walletKeyService.parse(unknownType));
+    }
+
+    private void assertSignatures(KeyPair keyPair, String keyType, String sigAlg) throws Exception {
+        WalletKeyService.ClaimKey claimKey = walletKeyService.parse(publicKey(keyPair, keyType));
+        assertNotNull(claimKey.toJwk());
+        for (int i = 0; i < 10; i++) {
+            byte[] data = ("data" + i).getBytes(StandardCharsets.UTF_8);
+            Signature signature = Signature.getInstance(sigAlg);
+            signature.initSign(keyPair.getPrivate());
+            signature.update(data);
+            byte[] signatureBytes = signature.sign();
+
+            assertTrue(walletKeyService.verify(claimKey, sigAlg, data, signatureBytes));
+            data[0] ^= 1;
+            assertFalse(walletKeyService.verify(claimKey, sigAlg, data, signatureBytes));
+        }
+    }
+
+    private KeyPair ecKeyPair(String curve) throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(new ECGenParameterSpec(curve));
+        return keyPairGenerator.generateKeyPair();
+    }
+
+    private PublicKey publicKey(KeyPair keyPair, String type) {
+        PublicKey publicKey = new PublicKey();
+        publicKey.setType(type);
+        publicKey.setValue(Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()));
+        return publicKey;
+    }
+}
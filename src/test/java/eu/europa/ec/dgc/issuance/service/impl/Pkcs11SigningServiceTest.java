@@ -0,0 +1,204 @@
+package eu.europa.ec.dgc.issuance.service.impl;
+
+import eu.europa.ec.dgc.issuance.config.IssuanceConfigProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.PublicKey;
+import java.security.Security;
+import java.security.Signature;
+import java.security.cert.Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PSSParameterSpec;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.mockito.Mockito;
+import org.springframework.boot.actuate.health.Status;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Pkcs11SigningServiceTest {
+    static final byte[] MESSAGE = "certificate to sign".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void testSignWithSoftwareProvider() throws Exception {
+        KeyPair ecKeyPair = generateKeyPair("EC");
+        KeyPair rsaKeyPair = generateKeyPair("RSA");
+        // the default JCA providers compute the same raw operations as the token
+        Pkcs11SigningService signingService = new Pkcs11SigningService(null, key -> null, 2,
+            Duration.ofSeconds(5), new SimpleMeterRegistry());
+        byte[] hash = MessageDigest.getInstance("SHA-256").digest(MESSAGE);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                KeyPair keyPair = i % 2 == 0 ? ecKeyPair : rsaKeyPair;
+                futures.add(executor.submit(() ->
+                    verify(keyPair.getPublic(), signingService.signHash(hash, keyPair.getPrivate()))));
+            }
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(2, signingService.getAvailableSessions());
+    }
+
+    @Test
+    void testFailedSignatureReleasesSession() throws Exception {
+        Pkcs11SigningService signingService = new Pkcs11SigningService(null, key -> null, 1,
+            Duration.ofMillis(100), new SimpleMeterRegistry());
+        PrivateKey dsaKey = KeyPairGenerator.getInstance("DSA").generateKeyPair().getPrivate();
+        assertThrows(IllegalArgumentException.class, () -> signingService.signHash(new byte[32], dsaKey));
+        assertEquals(1, signingService.getAvailableSessions());
+        KeyPair ecKeyPair = generateKeyPair("EC");
+        byte[] hash = MessageDigest.getInstance("SHA-256").digest(MESSAGE);
+        assertTrue(verify(ecKeyPair.getPublic(), signingService.signHash(hash, ecKeyPair.getPrivate())));
+    }
+
+    @Test
+    void testHealthCheckDoesNotWaitForBusySessions() throws Exception {
+        CountDownLatch signing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PublicKey rsaPublicKey = generateKeyPair("RSA").getPublic();
+        // the key parameters of a token key are looked up while its session is held
+        Pkcs11SigningService signingService = new Pkcs11SigningService(null, key -> {
+            signing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return rsaPublicKey;
+        }, 1, Duration.ofMillis(100), new SimpleMeterRegistry());
+        KeyPair ecKeyPair = generateKeyPair("EC");
+        Certificate certificate = Mockito.mock(Certificate.class);
+        Mockito.when(certificate.getPublicKey()).thenReturn(ecKeyPair.getPublic());
+        Pkcs11KeyProvider keyProvider = Mockito.mock(Pkcs11KeyProvider.class);
+        Mockito.when(keyProvider.getPrivateKey()).thenReturn(ecKeyPair.getPrivate());
+        Mockito.when(keyProvider.getCertificate()).thenReturn(certificate);
+        IssuanceConfigProperties issuanceConfigProperties = new IssuanceConfigProperties();
+        issuanceConfigProperties.getPkcs11().setHealthCheckInterval(Duration.ZERO);
+        Pkcs11HealthIndicator healthIndicator = new Pkcs11HealthIndicator(keyProvider, signingService,
+            issuanceConfigProperties);
+        assertEquals(Status.UP, healthIndicator.health().getStatus());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<byte[]> busy = executor.submit(() -> signingService.signHash(new byte[32], new TokenKey()));
+            signing.await();
+            assertNull(signingService.signHashIfIdle(new byte[32], ecKeyPair.getPrivate()));
+            // the only session is busy, the last result is reported instead of a timeout
+            assertEquals(Status.UP, healthIndicator.health().getStatus());
+
+            release.countDown();
+            assertThrows(ExecutionException.class, busy::get);
+            assertEquals(1, signingService.getAvailableSessions());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Signing with SoftHSM, see docs/configuration.md for the token setup.
+     */
+    @Test
+    @EnabledIfEnvironmentVariable(named = "PKCS11_LIBRARY", matches = ".+")
+    void testSignWithSoftHsm() throws Exception {
+        IssuanceConfigProperties issuanceConfigProperties = new IssuanceConfigProperties();
+        issuanceConfigProperties.setCertAlias("issuance-test");
+        issuanceConfigProperties.getPkcs11().setLibrary(System.getenv("PKCS11_LIBRARY"));
+        issuanceConfigProperties.getPkcs11().setPin(System.getenv().getOrDefault("PKCS11_PIN", "1234"));
+        importTestKey(issuanceConfigProperties);
+
+        Pkcs11KeyProvider keyProvider = new Pkcs11KeyProvider(issuanceConfigProperties);
+        keyProvider.loadKey();
+        Pkcs11SigningService signingService = new Pkcs11SigningService(keyProvider, issuanceConfigProperties,
+            new SimpleMeterRegistry());
+        byte[] hash = MessageDigest.getInstance("SHA-256").digest(MESSAGE);
+        byte[] signature = signingService.signHash(hash, keyProvider.getPrivateKey());
+        assertTrue(verify(keyProvider.getCertificate().getPublicKey(), signature));
+
+        Pkcs11HealthIndicator healthIndicator = new Pkcs11HealthIndicator(keyProvider, signingService,
+            issuanceConfigProperties);
+        assertEquals(Status.UP, healthIndicator.health().getStatus());
+    }
+
+    private void importTestKey(IssuanceConfigProperties issuanceConfigProperties) throws Exception {
+        KeyStore jks = KeyStore.getInstance("JKS");
+        try (InputStream in = new FileInputStream("certs/test.jks")) {
+            jks.load(in, "dgca".toCharArray());
+        }
+        PrivateKey privateKey = (PrivateKey) jks.getKey("dev_ec", "dgca".toCharArray());
+        Certificate certificate = jks.getCertificate("dev_ec");
+
+        Provider provider = Security.getProvider("SunPKCS11")
+            .configure(Pkcs11KeyProvider.providerConfig(issuanceConfigProperties.getPkcs11()));
+        KeyStore token = KeyStore.getInstance("PKCS11", provider);
+        token.load(null, issuanceConfigProperties.getPkcs11().getPin().toCharArray());
+        token.setKeyEntry(issuanceConfigProperties.getCertAlias(), privateKey, null,
+            new Certificate[] {certificate});
+    }
+
+    /**
+     * RSA key that is held by a token, its key parameters have to be looked up.
+     */
+    private static class TokenKey implements PrivateKey {
+        @Override
+        public String getAlgorithm() {
+            return "RSA";
+        }
+
+        @Override
+        public String getFormat() {
+            return null;
+        }
+
+        @Override
+        public byte[] getEncoded() {
+            return null;
+        }
+    }
+
+    private KeyPair generateKeyPair(String algorithm) throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(algorithm);
+        if ("EC".equals(algorithm)) {
+            keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        } else {
+            keyPairGenerator.initialize(2048);
+        }
+        return keyPairGenerator.generateKeyPair();
+    }
+
+    private boolean verify(PublicKey publicKey, byte[] signature) throws Exception {
+        Signature verifier;
+        if ("EC".equals(publicKey.getAlgorithm())) {
+            verifier = Signature.getInstance("SHA256withECDSAinP1363Format");
+        } else {
+            verifier = Signature.getInstance("RSASSA-PSS");
+            verifier.setParameter(new PSSParameterSpec("SHA-256", "MGF1", MGF1ParameterSpec.SHA256, 32, 1));
+        }
+        verifier.initVerify(publicKey);
+        verifier.update(MESSAGE);
+        return verifier.verify(signature);
+    }
+}
@@ -1,5 +1,6 @@
 package eu.europa.ec.dgc.issuance.service.impl;
 
+import COSE.ASN1;
 import COSE.AlgorithmID;
 import COSE.Attribute;
 import COSE.CoseException;
@@ -12,6 +13,7 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.Security;
 import java.security.Signature;
+import java.util.Arrays;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.junit.jupiter.api.Test;
 
@@ -128,6 +130,21 @@ class SigningServiceImplTest {
 
     }
 
+    @Test
+    void testRepeatedSignWithCachedEcKey() throws Exception {
+        key = OneKey.generateKey(AlgorithmID.ECDSA_256);
+        SigningServiceImpl signingService = new SigningServiceImpl();
+        Signature verifier = Signature.getInstance("SHA256withECDSA");
+        for (int i = 0; i < 20; i++) {
+            byte[] content = ("content" + i).getBytes();
+            byte[] signature = signingService.signHash(sha256(content), key.AsPrivateKey());
+            assertEquals(64, signature.length);
+            verifier.initVerify(key.AsPublicKey());
+            verifier.update(content);
+            assertTrue(verifier.verify(convertConcatToDer(signature)));
+        }
+    }
+
     private byte[] sha256(byte[] coseForSignBytes) throws NoSuchAlgorithmException {
         MessageDigest digest = MessageDigest.getInstance("SHA-256");
         return digest.digest(coseForSignBytes);
@@ -165,6 +182,13 @@ class SigningServiceImplTest {
         assertTrue(messageDecoded.validate(key));
     }
 
+    private static byte[] convertConcatToDer(byte[] concat) throws CoseException {
+        int len = concat.length / 2;
+        byte[] r = Arrays.copyOfRange(concat, 0, len);
+        byte[] s = Arrays.copyOfRange(concat, len, concat.length);
+        return ASN1.EncodeSignature(r, s);
+    }
+
     // code taken from COSE library
     private static byte[] convertDerToConcat(byte[] der, int len) throws CoseException {
         // this is far too naive